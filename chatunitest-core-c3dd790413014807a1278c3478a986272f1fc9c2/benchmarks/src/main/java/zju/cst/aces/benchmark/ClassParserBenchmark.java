@@ -0,0 +1,42 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.parser.ClassParser;
+import zju.cst.aces.parser.ProjectParser;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the fixture sources with the symbol solver configured as in a real run.
+ * Exporting the class and method info to tmpOutput is part of the measured work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassParserBenchmark {
+
+    @Param({"LedgerService.java", "Account.java"})
+    public String source;
+
+    private ClassParser classParser;
+    private String classPath;
+
+    @Setup
+    public void setUp() {
+        Path basedir = Fixtures.createProject();
+        Config config = Fixtures.config(basedir);
+        new ProjectParser(config);
+        classParser = new ClassParser(config, config.getParseOutput());
+        classPath = basedir.resolve("src/main/java").resolve(Fixtures.PACKAGE_PATH).resolve(source).toString();
+    }
+
+    @Benchmark
+    public int extractClass() throws Exception {
+        return classParser.extractClass(classPath);
+    }
+}
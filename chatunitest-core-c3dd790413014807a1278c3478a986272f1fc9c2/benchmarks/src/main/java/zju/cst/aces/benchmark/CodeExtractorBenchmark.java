@@ -0,0 +1,30 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.util.CodeExtractor;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodeExtractorBenchmark {
+
+    @Param({"class_in_fence.txt", "method_only.txt", "unfenced.txt"})
+    public String response;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Fixtures.read("responses/" + response);
+    }
+
+    @Benchmark
+    public String extract() {
+        return new CodeExtractor(text).getExtractedCode();
+    }
+}
@@ -0,0 +1,184 @@
+package zju.cst.aces.benchmark;
+
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import zju.cst.aces.api.Project;
+import zju.cst.aces.api.config.Config;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Loads the fixture corpus under /fixtures and builds the objects the benchmarks need
+ * without a Maven session.
+ */
+public class Fixtures {
+    public static final String PACKAGE_PATH = "com/example/ledger";
+    public static final String[] SOURCES = {"LedgerService.java", "Account.java", "Transaction.java"};
+    public static final String[] RESPONSES = {"class_in_fence.txt", "method_only.txt", "unfenced.txt"};
+    public static final String TEST_NAME = "com.example.ledger.LedgerService_transfer_0_Test";
+
+    public static String read(String resource) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + resource)) {
+            if (in == null) {
+                throw new RuntimeException("In Fixtures.read: missing fixture " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("In Fixtures.read: " + e);
+        }
+    }
+
+    public static String source(String name) {
+        return read("sources/" + PACKAGE_PATH + "/" + name);
+    }
+
+    /**
+     * Lay the fixture sources out as a Maven project in a temporary directory.
+     */
+    public static Path createProject() {
+        try {
+            Path basedir = Files.createTempDirectory("chatunitest-bench");
+            Path pkg = basedir.resolve("src/main/java").resolve(PACKAGE_PATH);
+            Files.createDirectories(pkg);
+            for (String name : SOURCES) {
+                Files.write(pkg.resolve(name), source(name).getBytes(StandardCharsets.UTF_8));
+            }
+            return basedir;
+        } catch (IOException e) {
+            throw new RuntimeException("In Fixtures.createProject: " + e);
+        }
+    }
+
+    /**
+     * Compile the fixture project and package it at {@link Project#getArtifactPath()},
+     * the obfuscator builds its symbol frames from this jar.
+     */
+    public static void packageProject(Path basedir) {
+        Path classes = basedir.resolve("target/classes");
+        Path pkg = basedir.resolve("src/main/java").resolve(PACKAGE_PATH);
+        try {
+            Files.createDirectories(classes);
+            List<String> args = new ArrayList<>(Arrays.asList("-d", classes.toString()));
+            for (String name : SOURCES) {
+                args.add(pkg.resolve(name).toString());
+            }
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+                throw new RuntimeException("In Fixtures.packageProject: failed to compile fixtures");
+            }
+            try (OutputStream out = Files.newOutputStream(basedir.resolve("target/ledger.jar"));
+                 JarOutputStream jar = new JarOutputStream(out);
+                 Stream<Path> files = Files.walk(classes)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    jar.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                    jar.write(Files.readAllBytes(file));
+                    jar.closeEntry();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("In Fixtures.packageProject: " + e);
+        }
+    }
+
+    public static Config config(Path basedir) {
+        return new Config.ConfigBuilder(new FixtureProject(basedir))
+                .tmpOutput(basedir.resolve("tmp"))
+                .classPaths(new ArrayList<>())
+                .obfuscateGroupIds(new String[]{"com.example"})
+                .build();
+    }
+
+    /**
+     * A summary whose failures point at the given lines of the test class, as the JUnit launcher reports them.
+     */
+    public static TestExecutionSummary failingSummary(String fullTestName, int... lines) {
+        List<TestExecutionSummary.Failure> failures = new ArrayList<>();
+        for (int line : lines) {
+            AssertionError error = new AssertionError("expected failure at line " + line);
+            error.setStackTrace(new StackTraceElement[]{
+                    new StackTraceElement("org.junit.jupiter.api.AssertionUtils", "fail", "AssertionUtils.java", 55),
+                    new StackTraceElement(fullTestName, "test" + line, "Test.java", line)});
+            failures.add((TestExecutionSummary.Failure) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                    new Class[]{TestExecutionSummary.Failure.class},
+                    (proxy, method, args) -> "getException".equals(method.getName()) ? error : null));
+        }
+        List<TestExecutionSummary.Failure> result = Collections.unmodifiableList(failures);
+        return (TestExecutionSummary) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class[]{TestExecutionSummary.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getFailures":
+                            return result;
+                        case "getTotalFailureCount":
+                        case "getTestsFailedCount":
+                            return (long) result.size();
+                        default:
+                            return method.getReturnType() == long.class ? 0L : null;
+                    }
+                });
+    }
+
+    static class FixtureProject implements Project {
+        private final Path basedir;
+
+        FixtureProject(Path basedir) {
+            this.basedir = basedir;
+        }
+
+        @Override
+        public Project getParent() {
+            return null;
+        }
+
+        @Override
+        public File getBasedir() {
+            return basedir.toFile();
+        }
+
+        @Override
+        public String getPackaging() {
+            return "jar";
+        }
+
+        @Override
+        public String getGroupId() {
+            return "com.example";
+        }
+
+        @Override
+        public String getArtifactId() {
+            return "ledger";
+        }
+
+        @Override
+        public List<String> getCompileSourceRoots() {
+            return Collections.singletonList(basedir.resolve("src/main/java").toString());
+        }
+
+        @Override
+        public Path getArtifactPath() {
+            return basedir.resolve("target/ledger.jar");
+        }
+
+        @Override
+        public Path getBuildPath() {
+            return basedir.resolve("target/classes");
+        }
+    }
+}
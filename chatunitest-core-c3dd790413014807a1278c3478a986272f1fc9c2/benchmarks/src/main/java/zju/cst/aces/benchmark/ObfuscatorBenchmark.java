@@ -0,0 +1,65 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.impl.obfuscator.Obfuscator;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.parser.ProjectParser;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obfuscates the focal class and deobfuscates a generated test with the symbol frame of LedgerService,
+ * as MethodRunner does when obfuscation is enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObfuscatorBenchmark {
+
+    private Obfuscator obfuscator;
+    private String code;
+    private String obfuscatedTest;
+
+    @Setup
+    public void setUp() {
+        Path basedir = Fixtures.createProject();
+        Fixtures.packageProject(basedir);
+        Config config = Fixtures.config(basedir);
+        // exporting goes through ProjectParser, which keeps the config of the run
+        new ProjectParser(config);
+        obfuscator = new Obfuscator(config);
+        obfuscator.exportSymbolFrame();
+
+        code = Fixtures.source("LedgerService.java");
+        PromptInfo promptInfo = new PromptInfo();
+        promptInfo.setFullClassName("com.example.ledger.LedgerService");
+        promptInfo.setClassName("LedgerService");
+        promptInfo.setMethodName("transfer");
+        promptInfo.setMethodSignature("transfer(String, String, BigDecimal, String)");
+        promptInfo.setContext(code);
+        promptInfo.setUnitTest(Fixtures.read("tests/LedgerService_transfer_0_Test.java"));
+        promptInfo.setConstructorDeps(new HashMap<>());
+        promptInfo.setMethodDeps(new HashMap<>());
+        obfuscator.obfuscatePromptInfo(promptInfo);
+        obfuscatedTest = promptInfo.getUnitTest();
+        if (obfuscatedTest.isEmpty()) {
+            throw new IllegalStateException("fixture test could not be obfuscated");
+        }
+    }
+
+    @Benchmark
+    public String obfuscateJava() {
+        return obfuscator.obfuscateJava(code);
+    }
+
+    @Benchmark
+    public String deobfuscateJava() {
+        return obfuscator.deobfuscateJava(obfuscatedTest);
+    }
+}
@@ -0,0 +1,55 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.prompt.PromptTemplate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders initial.ftl with the ledger fixture. The small budget forces the adaptive
+ * truncation loop to drop dependencies and re-render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptTemplateBenchmark {
+
+    @Param({"8192", "1024"})
+    public int maxPromptTokens;
+
+    private PromptTemplate promptTemplate;
+    private Map<String, Object> dataModel;
+
+    @Setup
+    public void setUp() {
+        Config config = Fixtures.config(Fixtures.createProject());
+        promptTemplate = new PromptTemplate(config, config.getProperties(), null, maxPromptTokens);
+
+        Map<String, String> cDeps = new LinkedHashMap<>();
+        cDeps.put("Account", Fixtures.source("Account.java"));
+        Map<String, String> mDeps = new LinkedHashMap<>();
+        mDeps.put("Transaction", Fixtures.source("Transaction.java"));
+        dataModel = new HashMap<>();
+        dataModel.put("method_sig", "transfer(String, String, BigDecimal, String)");
+        dataModel.put("class_name", "LedgerService");
+        dataModel.put("full_fm", Fixtures.source("LedgerService.java"));
+        dataModel.put("other_method_sigs", "deposit(String, BigDecimal, String), withdraw(String, BigDecimal, String), "
+                + "reverse(String), convert(BigDecimal, String, String), feeFor(Account, Account, BigDecimal)");
+        dataModel.put("c_deps", cDeps);
+        dataModel.put("m_deps", mDeps);
+    }
+
+    @Benchmark
+    public String renderTemplate() throws Exception {
+        // renderTemplate truncates the data model in place
+        promptTemplate.dataModel = new HashMap<>(dataModel);
+        return promptTemplate.renderTemplate(promptTemplate.TEMPLATE_INIT);
+    }
+}
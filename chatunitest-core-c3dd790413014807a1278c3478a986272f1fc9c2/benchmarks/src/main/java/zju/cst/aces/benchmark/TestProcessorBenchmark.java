@@ -0,0 +1,35 @@
+package zju.cst.aces.benchmark;
+
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.util.TestProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestProcessorBenchmark {
+
+    private TestProcessor testProcessor;
+    private PromptInfo promptInfo;
+    private TestExecutionSummary summary;
+
+    @Setup
+    public void setUp() {
+        testProcessor = new TestProcessor(Fixtures.TEST_NAME);
+        promptInfo = new PromptInfo();
+        promptInfo.setUnitTest(Fixtures.read("tests/LedgerService_transfer_0_Test.java"));
+        // assertions in testTransferChargesFee, testTransferReturnsTransactions and testTransferConvertsCurrency
+        summary = Fixtures.failingSummary(Fixtures.TEST_NAME, 34, 40, 72);
+    }
+
+    @Benchmark
+    public String removeErrorTest() {
+        return testProcessor.removeErrorTest(promptInfo, summary);
+    }
+}
@@ -0,0 +1,31 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.util.TokenCounter;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCounterBenchmark {
+
+    @Param({"response", "source"})
+    public String input;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = "response".equals(input) ? Fixtures.read("responses/class_in_fence.txt")
+                : Fixtures.source("LedgerService.java");
+    }
+
+    @Benchmark
+    public int countToken() {
+        return TokenCounter.countToken(text);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class Account {
+
+    public enum Status { ACTIVE, FROZEN, CLOSED }
+
+    private final String id;
+    private final String owner;
+    private final String currency;
+    private BigDecimal balance;
+    private BigDecimal overdraftLimit;
+    private Status status;
+    private final List<Transaction> history = new ArrayList<>();
+
+    public Account(String id, String owner, String currency) {
+        this(id, owner, currency, BigDecimal.ZERO);
+    }
+
+    public Account(String id, String owner, String currency, BigDecimal overdraftLimit) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("id must not be empty");
+        }
+        this.id = id;
+        this.owner = Objects.requireNonNull(owner, "owner");
+        this.currency = Objects.requireNonNull(currency, "currency");
+        this.balance = BigDecimal.ZERO;
+        this.overdraftLimit = overdraftLimit == null ? BigDecimal.ZERO : overdraftLimit;
+        this.status = Status.ACTIVE;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public BigDecimal getOverdraftLimit() {
+        return overdraftLimit;
+    }
+
+    public void setOverdraftLimit(BigDecimal overdraftLimit) {
+        if (overdraftLimit.signum() < 0) {
+            throw new IllegalArgumentException("overdraft limit must not be negative");
+        }
+        this.overdraftLimit = overdraftLimit;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isActive() {
+        return status == Status.ACTIVE;
+    }
+
+    public void freeze() {
+        if (status == Status.CLOSED) {
+            throw new IllegalStateException("account " + id + " is closed");
+        }
+        status = Status.FROZEN;
+    }
+
+    public void unfreeze() {
+        if (status == Status.FROZEN) {
+            status = Status.ACTIVE;
+        }
+    }
+
+    public void close() {
+        if (balance.signum() != 0) {
+            throw new IllegalStateException("account " + id + " still has a balance of " + balance);
+        }
+        status = Status.CLOSED;
+    }
+
+    public BigDecimal available() {
+        return balance.add(overdraftLimit);
+    }
+
+    public boolean canWithdraw(BigDecimal amount) {
+        return isActive() && available().compareTo(amount) >= 0;
+    }
+
+    void apply(Transaction transaction) {
+        if (transaction.getCredit().equals(id)) {
+            balance = balance.add(transaction.getAmount());
+        } else if (transaction.getDebit().equals(id)) {
+            balance = balance.subtract(transaction.getAmount());
+        } else {
+            throw new IllegalArgumentException("transaction " + transaction.getId() + " does not touch " + id);
+        }
+        history.add(transaction);
+    }
+
+    public List<Transaction> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+}
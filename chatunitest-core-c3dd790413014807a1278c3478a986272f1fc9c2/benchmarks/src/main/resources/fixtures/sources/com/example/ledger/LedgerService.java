@@ -0,0 +1,349 @@
+package com.example.ledger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A small double-entry ledger used as a parsing and prompting fixture.
+ */
+public class LedgerService {
+
+    public static final BigDecimal DEFAULT_FEE = new BigDecimal("0.25");
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private final Map<String, Account> accounts = new LinkedHashMap<>();
+    private final Map<String, Transaction> transactions = new HashMap<>();
+    private final Map<String, BigDecimal> exchangeRates = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final String baseCurrency;
+    private BigDecimal transferFee = DEFAULT_FEE;
+    private BigDecimal dailyLimit = new BigDecimal("10000");
+    private Duration reversalWindow = Duration.ofDays(30);
+
+    public LedgerService(String baseCurrency) {
+        this.baseCurrency = baseCurrency;
+        this.exchangeRates.put(baseCurrency, BigDecimal.ONE);
+    }
+
+    public LedgerService(String baseCurrency, BigDecimal transferFee, BigDecimal dailyLimit) {
+        this(baseCurrency);
+        setTransferFee(transferFee);
+        setDailyLimit(dailyLimit);
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public BigDecimal getTransferFee() {
+        return transferFee;
+    }
+
+    public void setTransferFee(BigDecimal transferFee) {
+        if (transferFee == null || transferFee.signum() < 0) {
+            throw new IllegalArgumentException("transfer fee must not be negative");
+        }
+        this.transferFee = transferFee;
+    }
+
+    public BigDecimal getDailyLimit() {
+        return dailyLimit;
+    }
+
+    public void setDailyLimit(BigDecimal dailyLimit) {
+        if (dailyLimit == null || dailyLimit.signum() <= 0) {
+            throw new IllegalArgumentException("daily limit must be positive");
+        }
+        this.dailyLimit = dailyLimit;
+    }
+
+    public void setReversalWindow(Duration reversalWindow) {
+        this.reversalWindow = reversalWindow;
+    }
+
+    public void setExchangeRate(String currency, BigDecimal rateToBase) {
+        if (rateToBase.signum() <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        exchangeRates.put(currency, rateToBase);
+    }
+
+    public Account open(String owner, String currency) {
+        if (!exchangeRates.containsKey(currency)) {
+            throw new IllegalArgumentException("unsupported currency " + currency);
+        }
+        String id = "ACC-" + sequence.incrementAndGet();
+        Account account = new Account(id, owner, currency);
+        accounts.put(id, account);
+        return account;
+    }
+
+    public Account open(String owner, String currency, BigDecimal overdraftLimit) {
+        Account account = open(owner, currency);
+        account.setOverdraftLimit(overdraftLimit);
+        return account;
+    }
+
+    public Optional<Account> find(String id) {
+        return Optional.ofNullable(accounts.get(id));
+    }
+
+    public Account require(String id) {
+        Account account = accounts.get(id);
+        if (account == null) {
+            throw new IllegalArgumentException("unknown account " + id);
+        }
+        return account;
+    }
+
+    public Collection<Account> accountsOf(String owner) {
+        return accounts.values().stream()
+                .filter(a -> a.getOwner().equals(owner))
+                .collect(Collectors.toList());
+    }
+
+    public Transaction deposit(String accountId, BigDecimal amount, String memo) {
+        Account account = require(accountId);
+        checkActive(account);
+        Transaction tx = new Transaction(nextTxId(), Transaction.Kind.DEPOSIT, null, accountId, amount, Instant.now(), memo);
+        account.apply(tx);
+        transactions.put(tx.getId(), tx);
+        return tx;
+    }
+
+    public Transaction withdraw(String accountId, BigDecimal amount, String memo) {
+        Account account = require(accountId);
+        checkActive(account);
+        if (!account.canWithdraw(amount)) {
+            throw new InsufficientFundsException(accountId, amount, account.available());
+        }
+        if (withdrawnToday(accountId).add(amount).compareTo(dailyLimit) > 0) {
+            throw new IllegalStateException("daily limit exceeded for " + accountId);
+        }
+        Transaction tx = new Transaction(nextTxId(), Transaction.Kind.WITHDRAWAL, accountId, null, amount, Instant.now(), memo);
+        account.apply(tx);
+        transactions.put(tx.getId(), tx);
+        return tx;
+    }
+
+    public List<Transaction> transfer(String fromId, String toId, BigDecimal amount, String memo) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("cannot transfer to the same account");
+        }
+        Account from = require(fromId);
+        Account to = require(toId);
+        checkActive(from);
+        checkActive(to);
+        BigDecimal fee = feeFor(from, to, amount);
+        BigDecimal total = amount.add(fee);
+        if (!from.canWithdraw(total)) {
+            throw new InsufficientFundsException(fromId, total, from.available());
+        }
+        BigDecimal credited = convert(amount, from.getCurrency(), to.getCurrency());
+        List<Transaction> result = new ArrayList<>();
+        Transaction debit = new Transaction(nextTxId(), Transaction.Kind.TRANSFER, fromId, toId, amount, Instant.now(), memo);
+        from.apply(debit);
+        result.add(debit);
+        if (credited.compareTo(amount) != 0) {
+            Transaction credit = new Transaction(nextTxId(), Transaction.Kind.TRANSFER, fromId, toId, credited, Instant.now(), memo + " (converted)");
+            to.apply(credit);
+            result.add(credit);
+        } else {
+            to.apply(debit);
+        }
+        if (fee.signum() > 0) {
+            Transaction feeTx = new Transaction(nextTxId(), Transaction.Kind.FEE, fromId, null, fee, Instant.now(), "transfer fee");
+            from.apply(feeTx);
+            result.add(feeTx);
+        }
+        result.forEach(tx -> transactions.put(tx.getId(), tx));
+        return result;
+    }
+
+    public Map<String, List<Transaction>> batchTransfer(String fromId, Map<String, BigDecimal> payments, String memo) {
+        if (payments.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batch too large: " + payments.size());
+        }
+        BigDecimal required = BigDecimal.ZERO;
+        for (Map.Entry<String, BigDecimal> entry : payments.entrySet()) {
+            required = required.add(entry.getValue()).add(feeFor(require(fromId), require(entry.getKey()), entry.getValue()));
+        }
+        if (!require(fromId).canWithdraw(required)) {
+            throw new InsufficientFundsException(fromId, required, require(fromId).available());
+        }
+        Map<String, List<Transaction>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, BigDecimal> entry : payments.entrySet()) {
+            result.put(entry.getKey(), transfer(fromId, entry.getKey(), entry.getValue(), memo));
+        }
+        return result;
+    }
+
+    public Transaction reverse(String transactionId) {
+        Transaction original = transactions.get(transactionId);
+        if (original == null) {
+            throw new IllegalArgumentException("unknown transaction " + transactionId);
+        }
+        if (original.getKind() == Transaction.Kind.REVERSAL || original.getKind() == Transaction.Kind.FEE) {
+            throw new IllegalStateException("transaction " + transactionId + " cannot be reversed");
+        }
+        if (Duration.between(original.getTimestamp(), Instant.now()).compareTo(reversalWindow) > 0) {
+            throw new IllegalStateException("reversal window elapsed for " + transactionId);
+        }
+        Transaction reversal = original.reverse(nextTxId());
+        if (!reversal.getDebit().isEmpty()) {
+            require(reversal.getDebit()).apply(reversal);
+        }
+        if (!reversal.getCredit().isEmpty()) {
+            require(reversal.getCredit()).apply(reversal);
+        }
+        transactions.put(reversal.getId(), reversal);
+        return reversal;
+    }
+
+    public BigDecimal accrueInterest(String accountId, BigDecimal annualRate, int days) {
+        Account account = require(accountId);
+        if (account.getBalance().signum() <= 0 || days <= 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal interest = account.getBalance()
+                .multiply(annualRate)
+                .multiply(BigDecimal.valueOf(days))
+                .divide(BigDecimal.valueOf(365), 2, RoundingMode.HALF_EVEN);
+        if (interest.signum() > 0) {
+            Transaction tx = new Transaction(nextTxId(), Transaction.Kind.INTEREST, null, accountId, interest, Instant.now(), days + " days");
+            account.apply(tx);
+            transactions.put(tx.getId(), tx);
+        }
+        return interest;
+    }
+
+    public BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency) {
+        if (fromCurrency.equals(toCurrency)) {
+            return amount;
+        }
+        BigDecimal fromRate = exchangeRates.get(fromCurrency);
+        BigDecimal toRate = exchangeRates.get(toCurrency);
+        if (fromRate == null || toRate == null) {
+            throw new IllegalArgumentException("no rate for " + fromCurrency + " -> " + toCurrency);
+        }
+        return amount.multiply(fromRate).divide(toRate, 2, RoundingMode.HALF_EVEN);
+    }
+
+    public BigDecimal totalBalance() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accounts.values()) {
+            total = total.add(convert(account.getBalance(), account.getCurrency(), baseCurrency));
+        }
+        return total;
+    }
+
+    public List<Account> topAccounts(int limit) {
+        return accounts.values().stream()
+                .sorted(Comparator.comparing((Account a) -> convert(a.getBalance(), a.getCurrency(), baseCurrency)).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public List<Transaction> search(Predicate<Transaction> filter) {
+        return transactions.values().stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(Transaction::getTimestamp))
+                .collect(Collectors.toList());
+    }
+
+    public String statement(String accountId) {
+        Account account = require(accountId);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Statement for ").append(account.getId()).append(" (").append(account.getOwner()).append(")\n");
+        BigDecimal running = BigDecimal.ZERO;
+        for (Transaction tx : account.getHistory()) {
+            BigDecimal signed = tx.getCredit().equals(accountId) ? tx.getAmount() : tx.getAmount().negate();
+            running = running.add(signed);
+            sb.append(tx.getTimestamp()).append(' ')
+                    .append(tx.getKind()).append(' ')
+                    .append(signed).append(' ')
+                    .append(running).append(' ')
+                    .append(tx.getMemo()).append('\n');
+        }
+        sb.append("Closing balance: ").append(account.getBalance()).append(' ').append(account.getCurrency());
+        return sb.toString();
+    }
+
+    public void closeAccount(String accountId, String settlementAccountId) {
+        Account account = require(accountId);
+        if (account.getBalance().signum() > 0) {
+            transfer(accountId, settlementAccountId, account.getBalance().subtract(feeFor(account, require(settlementAccountId), account.getBalance())), "settlement");
+        } else if (account.getBalance().signum() < 0) {
+            throw new IllegalStateException("account " + accountId + " is overdrawn");
+        }
+        account.close();
+    }
+
+    BigDecimal feeFor(Account from, Account to, BigDecimal amount) {
+        if (from.getOwner().equals(to.getOwner())) {
+            return BigDecimal.ZERO;
+        }
+        if (!from.getCurrency().equals(to.getCurrency())) {
+            return transferFee.add(amount.multiply(new BigDecimal("0.01")).setScale(2, RoundingMode.HALF_EVEN));
+        }
+        return transferFee;
+    }
+
+    private BigDecimal withdrawnToday(String accountId) {
+        Instant dayAgo = Instant.now().minus(Duration.ofDays(1));
+        return transactions.values().stream()
+                .filter(tx -> tx.getKind() == Transaction.Kind.WITHDRAWAL)
+                .filter(tx -> tx.getDebit().equals(accountId))
+                .filter(tx -> tx.getTimestamp().isAfter(dayAgo))
+                .map(Transaction::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private void checkActive(Account account) {
+        if (!account.isActive()) {
+            throw new IllegalStateException("account " + account.getId() + " is " + account.getStatus());
+        }
+    }
+
+    private String nextTxId() {
+        return "TX-" + sequence.incrementAndGet();
+    }
+
+    public static class InsufficientFundsException extends RuntimeException {
+        private final String accountId;
+        private final BigDecimal requested;
+        private final BigDecimal available;
+
+        public InsufficientFundsException(String accountId, BigDecimal requested, BigDecimal available) {
+            super("insufficient funds in " + accountId + ": requested " + requested + ", available " + available);
+            this.accountId = accountId;
+            this.requested = requested;
+            this.available = available;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public BigDecimal getRequested() {
+            return requested;
+        }
+
+        public BigDecimal getAvailable() {
+            return available;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.ledger;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+
+public class Transaction {
+
+    public enum Kind { DEPOSIT, WITHDRAWAL, TRANSFER, FEE, INTEREST, REVERSAL }
+
+    private final String id;
+    private final Kind kind;
+    private final String debit;
+    private final String credit;
+    private final BigDecimal amount;
+    private final Instant timestamp;
+    private final String memo;
+
+    public Transaction(String id, Kind kind, String debit, String credit, BigDecimal amount, Instant timestamp, String memo) {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("amount must be positive: " + amount);
+        }
+        this.id = Objects.requireNonNull(id);
+        this.kind = Objects.requireNonNull(kind);
+        this.debit = debit;
+        this.credit = credit;
+        this.amount = amount;
+        this.timestamp = timestamp == null ? Instant.now() : timestamp;
+        this.memo = memo == null ? "" : memo;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getDebit() {
+        return debit == null ? "" : debit;
+    }
+
+    public String getCredit() {
+        return credit == null ? "" : credit;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMemo() {
+        return memo;
+    }
+
+    public Transaction reverse(String reversalId) {
+        return new Transaction(reversalId, Kind.REVERSAL, credit, debit, amount, Instant.now(), "reversal of " + id);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + id + " " + getDebit() + " -> " + getCredit() + " " + amount;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ledger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LedgerService_transfer_0_Test {
+
+    private LedgerService ledger;
+    private Account alice;
+    private Account bob;
+
+    @BeforeEach
+    public void setUp() {
+        ledger = new LedgerService("USD");
+        alice = ledger.open("alice", "USD");
+        bob = ledger.open("bob", "USD");
+        ledger.deposit(alice.getId(), new BigDecimal("100.00"), "initial");
+    }
+
+    @Test
+    public void testTransferMovesAmount() {
+        ledger.transfer(alice.getId(), bob.getId(), new BigDecimal("10.00"), "rent");
+        assertEquals(new BigDecimal("10.00"), bob.getBalance());
+    }
+
+    @Test
+    public void testTransferChargesFee() {
+        ledger.transfer(alice.getId(), bob.getId(), new BigDecimal("10.00"), "rent");
+        assertEquals(new BigDecimal("89.75"), alice.getBalance());
+    }
+
+    @Test
+    public void testTransferReturnsTransactions() {
+        List<Transaction> txs = ledger.transfer(alice.getId(), bob.getId(), new BigDecimal("10.00"), "rent");
+        assertEquals(3, txs.size());
+    }
+
+    @Test
+    public void testTransferToSameAccount() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ledger.transfer(alice.getId(), alice.getId(), BigDecimal.ONE, "self"));
+    }
+
+    @Test
+    public void testTransferInsufficientFunds() {
+        assertThrows(LedgerService.InsufficientFundsException.class,
+                () -> ledger.transfer(alice.getId(), bob.getId(), new BigDecimal("1000.00"), "too much"));
+    }
+
+    @Test
+    public void testTransferBetweenOwnAccounts() {
+        Account savings = ledger.open("alice", "USD");
+        ledger.transfer(alice.getId(), savings.getId(), new BigDecimal("50.00"), "save");
+        assertEquals(new BigDecimal("50.00"), alice.getBalance());
+    }
+
+    @Test
+    public void testTransferFrozenAccount() {
+        bob.freeze();
+        assertThrows(IllegalStateException.class,
+                () -> ledger.transfer(alice.getId(), bob.getId(), BigDecimal.ONE, "frozen"));
+    }
+
+    @Test
+    public void testTransferConvertsCurrency() {
+        ledger.setExchangeRate("EUR", new BigDecimal("1.10"));
+        Account eur = ledger.open("carol", "EUR");
+        ledger.transfer(alice.getId(), eur.getId(), new BigDecimal("11.00"), "fx");
+        assertEquals(new BigDecimal("10.00"), eur.getBalance());
+    }
+}
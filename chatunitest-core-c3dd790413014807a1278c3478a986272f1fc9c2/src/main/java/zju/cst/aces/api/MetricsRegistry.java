@@ -0,0 +1,42 @@
+package zju.cst.aces.api;
+
+import java.nio.file.Path;
+
+/**
+ * MetricsRegistry 接口定义了记录生成流程各阶段指标的方法，包括计时器、计数器和直方图。
+ */
+public interface MetricsRegistry {
+
+    /**
+     * 记录一个阶段的耗时。
+     *
+     * @param stage 阶段名称，例如 parse、prompt、llm、compile。
+     * @param traceId 当前被测方法的追踪 ID，可以为 null。
+     * @param durationNanos 耗时（纳秒）。
+     */
+    void recordTimer(String stage, String traceId, long durationNanos);
+
+    /**
+     * 增加计数器的值。
+     *
+     * @param name 计数器名称。
+     * @param delta 增量。
+     */
+    void incrementCounter(String name, long delta);
+
+    /**
+     * 向直方图中记录一个观测值。
+     *
+     * @param name 直方图名称。
+     * @param value 观测值。
+     */
+    void recordHistogram(String name, long value);
+
+    /**
+     * 将本次运行的指标导出到指定目录。
+     *
+     * @param outputDir 输出目录。
+     * @param runId 本次运行的标识。
+     */
+    void export(Path outputDir, String runId);
+}
@@ -7,6 +7,9 @@ import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.parser.ProjectParser;
 import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.runner.BulkRunner;
+import zju.cst.aces.runner.DependencySchedule;
+import zju.cst.aces.runner.MethodPrioritizer;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,11 +17,17 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import zju.cst.aces.api.Logger;
+import zju.cst.aces.util.BudgetManager;
 import zju.cst.aces.util.Counter;
+import zju.cst.aces.util.Metrics;
 
 /**
  * Task类提供在方法、类和项目级别启动任务的方法。
@@ -61,51 +70,55 @@ public class Task {
         }
         ProjectParser parser = new ProjectParser(config);
         parser.parse();
-        log.info("\n==========================\n[ChatUniTest] Generating tests for class: < " + className
-                + "> method: < " + methodName + " > ...");
-
+        BudgetManager.start();
         try {
-            String fullClassName = getFullClassName(config, className);
-            ClassInfo classInfo = AbstractRunner.getClassInfo(config, fullClassName);
-            MethodInfo methodInfo = null;
-            if (methodName.matches("\\d+")) { // 使用方法id而不是方法名
-                String methodId = methodName;
-                for (String mSig : classInfo.methodSigs.keySet()) {
-                    if (classInfo.methodSigs.get(mSig).equals(methodId)) {
-                        methodInfo = AbstractRunner.getMethodInfo(config, classInfo, mSig);
-                        break;
-                    }
-                }
-                if (methodInfo == null) {
-                    throw new IOException("方法 " + methodName + " 在类 " + fullClassName + " 中未找到");
-                }
-                try {
-                    this.runner.runMethod(fullClassName, methodInfo);
-                } catch (Exception e) {
-                    log.error("生成测试时出错 " + methodName + " 在 " + className + " " + config.getProject().getArtifactId() + "\n" + e.getMessage());
-                }
-            } else {
-                for (String mSig : classInfo.methodSigs.keySet()) {
-                    if (mSig.split("\\(")[0].equals(methodName)) {
-                        methodInfo = AbstractRunner.getMethodInfo(config, classInfo, mSig);
-                        if (methodInfo == null) {
-                            throw new IOException("方法 " + methodName + " 在类 " + fullClassName + " 中未找到");
+            log.info("\n==========================\n[ChatUniTest] Generating tests for class: < " + className
+                    + "> method: < " + methodName + " > ...");
+
+            try {
+                String fullClassName = getFullClassName(config, className);
+                ClassInfo classInfo = AbstractRunner.getClassInfo(config, fullClassName);
+                MethodInfo methodInfo = null;
+                if (methodName.matches("\\d+")) { // 使用方法id而不是方法名
+                    String methodId = methodName;
+                    for (String mSig : classInfo.methodSigs.keySet()) {
+                        if (classInfo.methodSigs.get(mSig).equals(methodId)) {
+                            methodInfo = AbstractRunner.getMethodInfo(config, classInfo, mSig);
+                            break;
                         }
-                        try {
-                            this.runner.runMethod(fullClassName, methodInfo);
-                        } catch (Exception e) {
-                            log.error("生成测试时出错 " + methodName + " 在 " + className + " " + config.getProject().getArtifactId() + "\n" + e.getMessage());
+                    }
+                    if (methodInfo == null) {
+                        throw new IOException("方法 " + methodName + " 在类 " + fullClassName + " 中未找到");
+                    }
+                    try {
+                        this.runner.runMethod(fullClassName, methodInfo);
+                    } catch (Exception e) {
+                        log.error("生成测试时出错 " + methodName + " 在 " + className + " " + config.getProject().getArtifactId() + "\n" + e.getMessage());
+                    }
+                } else {
+                    for (String mSig : classInfo.methodSigs.keySet()) {
+                        if (mSig.split("\\(")[0].equals(methodName)) {
+                            methodInfo = AbstractRunner.getMethodInfo(config, classInfo, mSig);
+                            if (methodInfo == null) {
+                                throw new IOException("方法 " + methodName + " 在类 " + fullClassName + " 中未找到");
+                            }
+                            try {
+                                this.runner.runMethod(fullClassName, methodInfo);
+                            } catch (Exception e) {
+                                log.error("生成测试时出错 " + methodName + " 在 " + className + " " + config.getProject().getArtifactId() + "\n" + e.getMessage());
+                            }
                         }
                     }
                 }
-            }
 
-        } catch (IOException e) {
-            log.warn("未找到方法: " + methodName + " 在 " + className + " " + config.getProject().getArtifactId());
-            return;
+            } catch (IOException e) {
+                log.warn("未找到方法: " + methodName + " 在 " + className + " " + config.getProject().getArtifactId());
+                return;
+            }
+            log.info("\n==========================\n[ChatUniTest] 生成完成");
+        } finally {
+            finishRun();
         }
-
-        log.info("\n==========================\n[ChatUniTest] 生成完成");
     }
 
     /**
@@ -126,13 +139,18 @@ public class Task {
         }
         ProjectParser parser = new ProjectParser(config);
         parser.parse();
-        log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
+        BudgetManager.start();
         try {
-            this.runner.runClass(getFullClassName(config, className));
-        } catch (IOException e) {
-            log.warn("未找到类: " + className + " 在 " + config.getProject().getArtifactId());
+            log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
+            try {
+                this.runner.runClass(getFullClassName(config, className));
+            } catch (IOException e) {
+                log.warn("未找到类: " + className + " 在 " + config.getProject().getArtifactId());
+            }
+            log.info("\n==========================\n[ChatUniTest] 生成完成");
+        } finally {
+            finishRun();
         }
-        log.info("\n==========================\n[ChatUniTest] 生成完成");
     }
 
     /**
@@ -152,66 +170,183 @@ public class Task {
         }
         ProjectParser parser = new ProjectParser(config);
         parser.parse();
-        List<String> classPaths = ProjectParser.scanSourceDirectory(project);
-        if (config.isEnableMultithreading()) {
-            projectJob(classPaths);
+        BudgetManager.start();
+        try {
+            List<String> classPaths = ProjectParser.scanSourceDirectory(project);
+            if (config.isEnableBulkGeneration()) {
+                bulkJob(classPaths);
+            } else if (config.isEnableMultithreading()) {
+                projectJob(classPaths);
+            } else {
+                for (List<String> wave : scheduleClassPaths(classPaths)) {
+                    for (String classPath : wave) {
+                        String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+                        try {
+                            String fullClassName = getFullClassName(config, className);
+                            log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
+                            ClassInfo info = AbstractRunner.getClassInfo(config, fullClassName);
+                            if (!Counter.filter(info)) {
+                                config.getLog().info("跳过类: " + classPath);
+                                continue;
+                            }
+                            this.runner.runClass(fullClassName);
+                        } catch (IOException e) {
+                            log.error("[ChatUniTest] 为类生成测试 " + className + " 失败: " + e);
+                        }
+                    }
+                }
+            }
+            log.info("\n==========================\n[ChatUniTest] 生成完成");
+        } finally {
+            finishRun();
+        }
+    }
+
+    /**
+     * 保存方法统计并输出预算报告和指标，任务提前结束时同样执行。
+     */
+    private void finishRun() {
+        MethodPrioritizer.save(config);
+        BudgetManager.report(config);
+        Metrics.export(config);
+    }
+
+    /**
+     * 将类划分为依次执行的批次。启用依赖顺序时，类排在其依赖的类之后，
+     * 同一批次内的类互不依赖（循环依赖除外），可以并行生成。
+     * 启用优先级时，批次内的类按其方法的最高优先级降序排列，预算有限时先生成收益最高的类。
+     *
+     * @param classPaths 要处理的类路径列表。
+     * @return 按执行顺序排列的类路径批次。
+     */
+    public List<List<String>> scheduleClassPaths(List<String> classPaths) {
+        List<List<String>> waves = new ArrayList<>();
+        if (!config.isEnableDependencyOrder()) {
+            waves.add(new ArrayList<>(classPaths));
         } else {
+            Map<String, List<String>> pathsByName = new LinkedHashMap<>();
             for (String classPath : classPaths) {
                 String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+                String fullClassName;
                 try {
-                    String fullClassName = getFullClassName(config, className);
-                    log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
-                    ClassInfo info = AbstractRunner.getClassInfo(config, fullClassName);
-                    if (!Counter.filter(info)) {
-                        config.getLog().info("跳过类: " + classPath);
-                        continue;
-                    }
-                    this.runner.runClass(fullClassName);
-                } catch (IOException e) {
-                    log.error("[ChatUniTest] 为类生成测试 " + className + " 失败: " + e);
+                    fullClassName = getFullClassName(config, className);
+                } catch (IOException | RuntimeException e) {
+                    fullClassName = className;
+                }
+                pathsByName.computeIfAbsent(fullClassName, k -> new ArrayList<>()).add(classPath);
+            }
+            for (List<String> names : DependencySchedule.getInstance(config).classWaves(new ArrayList<>(pathsByName.keySet()))) {
+                List<String> wave = new ArrayList<>();
+                for (String name : names) {
+                    wave.addAll(pathsByName.get(name));
                 }
+                waves.add(wave);
             }
         }
-
-        log.info("\n==========================\n[ChatUniTest] 生成完成");
+        if (config.isEnablePrioritization()) {
+            Map<String, Double> priorities = classPriorities(classPaths);
+            for (List<String> wave : waves) {
+                wave.sort(Comparator.comparingDouble((String classPath) -> -priorities.get(classPath)));
+            }
+        }
+        return waves;
     }
 
     /**
-     * 如果启用多线程，则使用多线程执行项目任务。
+     * 计算每个类的优先级，即其方法的最高优先级，无法解析的类为 0。
      *
      * @param classPaths 要处理的类路径列表。
+     * @return 类路径到优先级的映射。
      */
-    public void projectJob(List<String> classPaths) {
-        ExecutorService executor = Executors.newFixedThreadPool(config.getClassThreads());
-        List<Future<String>> futures = new ArrayList<>();
+    private Map<String, Double> classPriorities(List<String> classPaths) {
+        MethodPrioritizer prioritizer = new MethodPrioritizer(config);
+        Map<String, Double> priorities = new HashMap<>();
         for (String classPath : classPaths) {
-            Callable<String> callable = new Callable<String>() {
-                @Override
-                public String call() throws Exception {
-                    String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
-                    try {
-                        String fullClassName = getFullClassName(config, className);
-                        log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
-                        ClassInfo info = AbstractRunner.getClassInfo(config, fullClassName);
-                        if (!Counter.filter(info)) {
-                            return "跳过类: " + classPath;
-                        }
-                        runner.runClass(fullClassName);
-                    } catch (IOException e) {
-                        log.error("[ChatUniTest] 为类生成测试 " + className + " 失败: " + e);
-                    }
-                    return "已处理 " + classPath;
+            String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+            double priority = 0;
+            try {
+                ClassInfo classInfo = AbstractRunner.getClassInfo(config, getFullClassName(config, className));
+                if (classInfo != null) {
+                    priority = prioritizer.classPriority(classInfo);
                 }
-            };
-            Future<String> future = executor.submit(callable);
-            futures.add(future);
+            } catch (IOException | RuntimeException e) {
+                log.warn("[ChatUniTest] 计算类优先级失败 " + className + ": " + e);
+            }
+            priorities.put(classPath, priority);
         }
+        return priorities;
+    }
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
+    /**
+     * 以离线批处理任务生成所有类的首轮测试，再逐个验证和修复。
+     *
+     * @param classPaths 要处理的类路径列表。
+     */
+    public void bulkJob(List<String> classPaths) {
+        List<String> orderedPaths = new ArrayList<>();
+        scheduleClassPaths(classPaths).forEach(orderedPaths::addAll);
+        List<String> fullClassNames = new ArrayList<>();
+        for (String classPath : orderedPaths) {
+            String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+            try {
+                String fullClassName = getFullClassName(config, className);
+                ClassInfo info = AbstractRunner.getClassInfo(config, fullClassName);
+                if (!Counter.filter(info)) {
+                    config.getLog().info("跳过类: " + classPath);
+                    continue;
+                }
+                fullClassNames.add(fullClassName);
+            } catch (IOException e) {
+                log.error("[ChatUniTest] 为类生成测试 " + className + " 失败: " + e);
+            }
+        }
+        try {
+            new BulkRunner(config).start(fullClassNames);
+        } catch (IOException e) {
+            log.error("[ChatUniTest] 批量生成测试失败: " + e);
+        }
+    }
+
+    /**
+     * 如果启用多线程，则使用多线程执行项目任务。启用依赖顺序时，每个类在其依赖的类完成后即开始，
+     * 不等待前一批次的其他类。
+     *
+     * @param classPaths 要处理的类路径列表。
+     */
+    public void projectJob(List<String> classPaths) {
+        ExecutorService executor = Executors.newFixedThreadPool(config.getClassThreads());
+        Thread shutdownHook = new Thread() {
             public void run() {
                 executor.shutdownNow();
             }
-        });
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        Map<String, List<CompletableFuture<String>>> started = new HashMap<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (List<String> wave : scheduleClassPaths(classPaths)) {
+            for (String classPath : wave) {
+                String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+                String fullClassName;
+                try {
+                    fullClassName = getFullClassName(config, className);
+                } catch (IOException | RuntimeException e) {
+                    fullClassName = className;
+                }
+                List<CompletableFuture<String>> dependencies = new ArrayList<>();
+                if (config.isEnableDependencyOrder()) {
+                    for (String dependency : DependencySchedule.getInstance(config).classDependencies(fullClassName)) {
+                        dependencies.addAll(started.getOrDefault(dependency, Collections.emptyList()));
+                    }
+                }
+                // a failed dependency does not hold back its dependents
+                CompletableFuture<String> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                        .handle((result, e) -> null)
+                        .thenApplyAsync(ignored -> runClassJob(classPath), executor);
+                started.computeIfAbsent(fullClassName, k -> new ArrayList<>()).add(future);
+                futures.add(future);
+            }
+        }
 
         for (Future<String> future : futures) {
             try {
@@ -223,6 +358,27 @@ public class Task {
         }
 
         executor.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down, the hook stops the executor
+        }
+    }
+
+    private String runClassJob(String classPath) {
+        String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
+        try {
+            String fullClassName = getFullClassName(config, className);
+            log.info("\n==========================\n[ChatUniTest] Generating tests for class < " + className + " > ...");
+            ClassInfo info = AbstractRunner.getClassInfo(config, fullClassName);
+            if (!Counter.filter(info)) {
+                return "跳过类: " + classPath;
+            }
+            runner.runClass(fullClassName);
+        } catch (IOException e) {
+            log.error("[ChatUniTest] 为类生成测试 " + className + " 失败: " + e);
+        }
+        return "已处理 " + classPath;
     }
 
     /**
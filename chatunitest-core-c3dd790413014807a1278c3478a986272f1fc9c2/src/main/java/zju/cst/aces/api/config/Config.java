@@ -8,11 +8,15 @@ import com.google.gson.GsonBuilder;
 import lombok.Getter;
 import lombok.Setter;
 import okhttp3.OkHttpClient;
+import zju.cst.aces.api.MetricsRegistry;
 import zju.cst.aces.api.Validator;
 import zju.cst.aces.api.impl.LoggerImpl;
 import zju.cst.aces.api.Logger;
+import zju.cst.aces.api.impl.MetricsRegistryImpl;
 import zju.cst.aces.api.impl.ValidatorImpl;
 import zju.cst.aces.prompt.PromptTemplate;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.TokenCounter;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,6 +27,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -47,6 +52,7 @@ public class Config {
     public String url;
     public String[] apiKeys;
     public Logger log;
+    public MetricsRegistry metrics;
     public String OS;
     public boolean stopWhenSuccess;
     public boolean noExecution;
@@ -54,10 +60,21 @@ public class Config {
     public boolean enableRuleRepair;
     public boolean enableMerge;
     public boolean enableObfuscate;
+    public boolean enableDependencyOrder;
+    public boolean enablePrioritization;
+    public boolean enableHedging;
+    public double hedgingBudget;
+    public boolean enableStablePrefix;
+    public boolean enableBatchGeneration;
+    public int batchSize;
+    public boolean enableBulkGeneration;
+    public String batchEndpoint;
+    public int batchPollSeconds;
     public String[] obfuscateGroupIds;
     public int maxThreads;
     public int classThreads;
     public int methodThreads;
+    public int testExecutionThreads;
     public int testNumber;
     public int maxRounds;
     public int maxPromptTokens;
@@ -65,7 +82,11 @@ public class Config {
     public int minErrorTokens;
     public int sleepTime;
     public int dependencyDepth;
+    public long maxTotalTokens;
+    public double maxCost;
+    public int deadlineMinutes;
     public Model model;
+    public Model[] routingModels;
     public Double temperature;
     public int topP;
     public int frequencyPenalty;
@@ -79,6 +100,8 @@ public class Config {
     public Path historyPath;
     public Path examplePath;
     public Path symbolFramePath;
+    public Path callGraphPath;
+    public Path typeGraphPath;
 
     public String proxy;
     public String hostname;
@@ -102,6 +125,7 @@ public class Config {
         public String url;
         public String[] apiKeys;
         public Logger log;
+        public MetricsRegistry metrics = new MetricsRegistryImpl();
         public String OS = System.getProperty("os.name").toLowerCase();
         public boolean stopWhenSuccess = true;
         public boolean noExecution = false;
@@ -109,10 +133,21 @@ public class Config {
         public boolean enableRuleRepair = true;
         public boolean enableMerge = true;
         public boolean enableObfuscate = false;
+        public boolean enableDependencyOrder = false;
+        public boolean enablePrioritization = false;
+        public boolean enableHedging = false;
+        public double hedgingBudget = 0.05;
+        public boolean enableStablePrefix = false;
+        public boolean enableBatchGeneration = false;
+        public int batchSize = 5;
+        public boolean enableBulkGeneration = false;
+        public String batchEndpoint;
+        public int batchPollSeconds = 60;
         public String[] obfuscateGroupIds;
         public int maxThreads = Runtime.getRuntime().availableProcessors() * 5;
         public int classThreads = (int) Math.ceil((double) this.maxThreads / 10);
         public int methodThreads = (int) Math.ceil((double) this.maxThreads / this.classThreads);
+        public int testExecutionThreads = 1;
         public int testNumber = 5;
         public int maxRounds = 5;
         public int maxPromptTokens = 2600;
@@ -120,7 +155,11 @@ public class Config {
         public int minErrorTokens = 500;
         public int sleepTime = 0;
         public int dependencyDepth = 1;
+        public long maxTotalTokens = 0;
+        public double maxCost = 0;
+        public int deadlineMinutes = 0;
         public Model model = Model.GPT_3_5_TURBO;
+        public Model[] routingModels = new Model[0];
         public Double temperature = 0.5;
         public int topP = 1;
         public int frequencyPenalty = 0;
@@ -134,6 +173,8 @@ public class Config {
         public Path historyPath;
         public Path examplePath;
         public Path symbolFramePath;
+        public Path callGraphPath;
+        public Path typeGraphPath;
         public String proxy = "null:-1";
         public String hostname = "null";
         public String port = "-1";
@@ -175,6 +216,8 @@ public class Config {
             this.classNameMapPath = this.tmpOutput.resolve("classNameMapping.json");
             this.historyPath = this.tmpOutput.resolve("history" + this.date);
             this.symbolFramePath = this.tmpOutput.resolve("symbolFrames.json");
+            this.callGraphPath = this.tmpOutput.resolve("callGraph.json");
+            this.typeGraphPath = this.tmpOutput.resolve("typeGraph.json");
             this.testOutput = project.getBasedir().toPath().resolve("chatunitest-tests");
             this.validator = new ValidatorImpl(this.testOutput, this.compileOutputPath,
                     this.project.getBasedir().toPath().resolve("target"), this.classPaths);
@@ -213,6 +256,8 @@ public class Config {
             this.classNameMapPath = this.tmpOutput.resolve("classNameMapping.json");
             this.historyPath = this.tmpOutput.resolve("history" + this.date);
             this.symbolFramePath = this.tmpOutput.resolve("symbolFrames.json");
+            this.callGraphPath = this.tmpOutput.resolve("callGraph.json");
+            this.typeGraphPath = this.tmpOutput.resolve("typeGraph.json");
             this.validator = new ValidatorImpl(this.testOutput, this.compileOutputPath,
                     this.project.getBasedir().toPath().resolve("target"), this.classPaths);
             return this;
@@ -252,6 +297,11 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder metrics(MetricsRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         public ConfigBuilder OS(String OS) {
             this.OS = OS;
             return this;
@@ -262,6 +312,56 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder enableDependencyOrder(boolean enableDependencyOrder) {
+            this.enableDependencyOrder = enableDependencyOrder;
+            return this;
+        }
+
+        public ConfigBuilder enablePrioritization(boolean enablePrioritization) {
+            this.enablePrioritization = enablePrioritization;
+            return this;
+        }
+
+        public ConfigBuilder enableHedging(boolean enableHedging) {
+            this.enableHedging = enableHedging;
+            return this;
+        }
+
+        public ConfigBuilder hedgingBudget(double hedgingBudget) {
+            this.hedgingBudget = hedgingBudget;
+            return this;
+        }
+
+        public ConfigBuilder enableStablePrefix(boolean enableStablePrefix) {
+            this.enableStablePrefix = enableStablePrefix;
+            return this;
+        }
+
+        public ConfigBuilder enableBatchGeneration(boolean enableBatchGeneration) {
+            this.enableBatchGeneration = enableBatchGeneration;
+            return this;
+        }
+
+        public ConfigBuilder batchSize(int batchSize) {
+            this.batchSize = Math.max(batchSize, 1);
+            return this;
+        }
+
+        public ConfigBuilder enableBulkGeneration(boolean enableBulkGeneration) {
+            this.enableBulkGeneration = enableBulkGeneration;
+            return this;
+        }
+
+        public ConfigBuilder batchEndpoint(String batchEndpoint) {
+            this.batchEndpoint = batchEndpoint;
+            return this;
+        }
+
+        public ConfigBuilder batchPollSeconds(int batchPollSeconds) {
+            this.batchPollSeconds = Math.max(batchPollSeconds, 1);
+            return this;
+        }
+
         public ConfigBuilder noExecution(boolean noExecution) {
             this.noExecution = noExecution;
             return this;
@@ -315,6 +415,11 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder testExecutionThreads(int testExecutionThreads) {
+            this.testExecutionThreads = Math.max(testExecutionThreads, 1);
+            return this;
+        }
+
         public ConfigBuilder url(String url) {
             if (!this.model.getModelName().contains("gpt-4") && !this.model.getModelName().contains("gpt-3.5") && url.equals("https://api.openai.com/v1/chat/completions")) {
                 throw new RuntimeException("Invalid url for model: " + this.model + ". Please configure the url in plugin configuration.");
@@ -364,6 +469,21 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder maxTotalTokens(long maxTotalTokens) {
+            this.maxTotalTokens = maxTotalTokens;
+            return this;
+        }
+
+        public ConfigBuilder maxCost(double maxCost) {
+            this.maxCost = maxCost;
+            return this;
+        }
+
+        public ConfigBuilder deadlineMinutes(int deadlineMinutes) {
+            this.deadlineMinutes = deadlineMinutes;
+            return this;
+        }
+
         public ConfigBuilder model(String model) {
             this.model = Model.fromString(model);
             this.maxPromptTokens = this.model.getDefaultConfig().getContextLength() * 2 / 3;
@@ -375,6 +495,68 @@ public class Config {
             return this;
         }
 
+        /**
+         * 设置路由使用的模型，按从便宜到强大的顺序排列。为空时所有请求使用 model。
+         *
+         * @param models 模型名称数组。
+         * @return ConfigBuilder实例。
+         */
+        public ConfigBuilder routingModels(String[] models) {
+            this.routingModels = new Model[models.length];
+            for (int i = 0; i < models.length; i++) {
+                this.routingModels[i] = Model.fromString(models[i]);
+            }
+            return this;
+        }
+
+        /**
+         * 设置指定模型的服务 URL。
+         *
+         * @param model 模型名称。
+         * @param url 模型服务的 URL。
+         * @return ConfigBuilder实例。
+         */
+        public ConfigBuilder modelUrl(String model, String url) {
+            Model.fromString(model).getDefaultConfig().setUrl(url);
+            return this;
+        }
+
+        /**
+         * 设置指定模型的备用服务 URL，主 URL 不可用时切换到备用 URL。
+         *
+         * @param model 模型名称。
+         * @param backupUrls 备用 URL 数组。
+         * @return ConfigBuilder实例。
+         */
+        public ConfigBuilder modelBackupUrls(String model, String[] backupUrls) {
+            Model.fromString(model).getDefaultConfig().setBackupUrls(backupUrls);
+            return this;
+        }
+
+        /**
+         * 设置指定模型的本地推理服务槽位数，小于 0 时从服务读取。
+         *
+         * @param model 模型名称。
+         * @param slots 槽位数。
+         * @return ConfigBuilder实例。
+         */
+        public ConfigBuilder modelSlots(String model, int slots) {
+            Model.fromString(model).getDefaultConfig().setSlots(slots);
+            return this;
+        }
+
+        /**
+         * 设置指定模型使用的 API 密钥。
+         *
+         * @param model 模型名称。
+         * @param apiKeys API 密钥数组。
+         * @return ConfigBuilder实例。
+         */
+        public ConfigBuilder modelApiKeys(String model, String[] apiKeys) {
+            Model.fromString(model).getDefaultConfig().setApiKeys(apiKeys);
+            return this;
+        }
+
         public ConfigBuilder temperature(Double temperature) {
             this.temperature = temperature;
             return this;
@@ -440,6 +622,16 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder callGraphPath(Path callGraphPath) {
+            this.callGraphPath = callGraphPath;
+            return this;
+        }
+
+        public ConfigBuilder typeGraphPath(Path typeGraphPath) {
+            this.typeGraphPath = typeGraphPath;
+            return this;
+        }
+
         public ConfigBuilder hostname(String hostname) {
             this.hostname = hostname;
             return this;
@@ -530,10 +722,21 @@ public class Config {
             config.setEnableRuleRepair(this.enableRuleRepair);
             config.setEnableMerge(this.enableMerge);
             config.setEnableObfuscate(this.enableObfuscate);
+            config.setEnableDependencyOrder(this.enableDependencyOrder);
+            config.setEnablePrioritization(this.enablePrioritization);
+            config.setEnableHedging(this.enableHedging);
+            config.setHedgingBudget(this.hedgingBudget);
+            config.setEnableStablePrefix(this.enableStablePrefix);
+            config.setEnableBatchGeneration(this.enableBatchGeneration);
+            config.setBatchSize(this.batchSize);
+            config.setEnableBulkGeneration(this.enableBulkGeneration);
+            config.setBatchEndpoint(this.batchEndpoint);
+            config.setBatchPollSeconds(this.batchPollSeconds);
             config.setObfuscateGroupIds(this.obfuscateGroupIds);
             config.setMaxThreads(this.maxThreads);
             config.setClassThreads(this.classThreads);
             config.setMethodThreads(this.methodThreads);
+            config.setTestExecutionThreads(this.testExecutionThreads);
             config.setTestNumber(this.testNumber);
             config.setMaxRounds(this.maxRounds);
             config.setMaxPromptTokens(this.maxPromptTokens);
@@ -541,7 +744,11 @@ public class Config {
             config.setMinErrorTokens(this.minErrorTokens);
             config.setSleepTime(this.sleepTime);
             config.setDependencyDepth(this.dependencyDepth);
+            config.setMaxTotalTokens(this.maxTotalTokens);
+            config.setMaxCost(this.maxCost);
+            config.setDeadlineMinutes(this.deadlineMinutes);
             config.setModel(this.model);
+            config.setRoutingModels(this.routingModels);
             config.setTemperature(this.temperature);
             config.setTopP(this.topP);
             config.setFrequencyPenalty(this.frequencyPenalty);
@@ -555,11 +762,19 @@ public class Config {
             config.setHistoryPath(this.historyPath);
             config.setExamplePath(this.examplePath);
             config.setSymbolFramePath(this.symbolFramePath);
+            config.setCallGraphPath(this.callGraphPath);
+            config.setTypeGraphPath(this.typeGraphPath);
             config.setProxy(this.proxy);
             config.setHostname(this.hostname);
             config.setPort(this.port);
             config.setClient(this.client);
             config.setLog(this.log);
+            config.setMetrics(this.metrics);
+            Metrics.setRegistry(this.metrics);
+            TokenCounter.setDefaultModel(this.model);
+            if (this.validator instanceof ValidatorImpl) {
+                ((ValidatorImpl) this.validator).getCompiler().setTestExecutionThreads(this.testExecutionThreads);
+            }
             config.setValidator(this.validator);
             return config;
         }
@@ -590,7 +805,25 @@ public class Config {
         }
         log.info(" Stop when success >>>> " + this.isStopWhenSuccess());
         log.info(" No execution >>>> " + this.isNoExecution());
+        if (!this.isNoExecution() && this.getTestExecutionThreads() > 1) {
+            log.info(" - Test execution threads: " + this.getTestExecutionThreads());
+        }
         log.info(" Enable Merge >>>> " + this.isEnableMerge());
+        log.info(" Dependency order >>>> " + this.isEnableDependencyOrder());
+        log.info(" Prioritization >>>> " + this.isEnablePrioritization());
+        log.info(" Stable prompt prefix >>>> " + this.isEnableStablePrefix());
+        log.info(" Batch generation >>>> " + this.isEnableBatchGeneration());
+        if (this.isEnableBatchGeneration()) {
+            log.info(" - Batch size: " + this.getBatchSize());
+        }
+        log.info(" Bulk generation >>>> " + this.isEnableBulkGeneration());
+        if (this.isEnableBulkGeneration()) {
+            log.info(" - Batch endpoint: " + (this.getBatchEndpoint() == null ? "local" : this.getBatchEndpoint()));
+        }
+        log.info(" Hedging >>>> " + this.isEnableHedging());
+        if (this.isEnableHedging()) {
+            log.info(" - Hedging budget: " + this.getHedgingBudget());
+        }
         log.info(" --- ");
         log.info(" TestOutput Path >>> " + this.getTestOutput());
         log.info(" TmpOutput Path >>> " + this.getTmpOutput());
@@ -598,6 +831,9 @@ public class Config {
         log.info(" Example path >>> " + this.getExamplePath());
         log.info(" --- ");
         log.info(" Model >>> " + this.getModel());
+        if (this.getRoutingModels().length > 0) {
+            log.info(" Routing models >>> " + Arrays.toString(this.getRoutingModels()));
+        }
         log.info(" Url >>> " + this.getUrl());
         log.info(" MaxPromptTokens >>> " + this.getMaxPromptTokens());
         log.info(" MaxResponseTokens >>> " + this.getMaxResponseTokens());
@@ -609,6 +845,9 @@ public class Config {
         log.info(" MaxPromptTokens >>> " + this.getMaxPromptTokens());
         log.info(" SleepTime >>> " + this.getSleepTime());
         log.info(" DependencyDepth >>> " + this.getDependencyDepth());
+        log.info(" MaxTotalTokens >>> " + this.getMaxTotalTokens());
+        log.info(" MaxCost >>> " + this.getMaxCost());
+        log.info(" DeadlineMinutes >>> " + this.getDeadlineMinutes());
         log.info("\n===================================================================\n");
         try {
             Thread.sleep(1000);
@@ -14,6 +14,8 @@ public enum Model {
             .withTemperature(0.5)
             .withFrequencyPenalty(0)
             .withPresencePenalty(0)
+            .withPromptPrice(0.0015)
+            .withCompletionPrice(0.002)
             .build()),
     GPT_3_5_TURBO_1106("gpt-3.5-turbo-1106", new ModelConfig.Builder()
             .withModelName("gpt-3.5-turbo-1106")
@@ -22,6 +24,8 @@ public enum Model {
             .withTemperature(0.5)
             .withFrequencyPenalty(0)
             .withPresencePenalty(0)
+            .withPromptPrice(0.001)
+            .withCompletionPrice(0.002)
             .build()),
     CODE_LLAMA("code-llama", new ModelConfig.Builder()
             .withModelName("code-llama")
@@ -30,6 +34,17 @@ public enum Model {
             .withTemperature(0.5)
             .withFrequencyPenalty(0)
             .withPresencePenalty(0)
+            .withEncoding("cl100k_base")
+            .build()),
+    LLAMA_CPP("llama-cpp", new ModelConfig.Builder()
+            .withModelName("llama-cpp")
+            .withUrl("http://localhost:8080/v1/chat/completions")
+            .withContextLength(16384)
+            .withTemperature(0.5)
+            .withFrequencyPenalty(0)
+            .withPresencePenalty(0)
+            .withEncoding("cl100k_base")
+            .withSlots(-1)
             .build());
     // 添加更多模型
 
@@ -3,7 +3,7 @@ package zju.cst.aces.api.config;
 import lombok.Data;
 
 /**
- * ModelConfig 类用于配置模型的相关参数，包括模型名称、URL、上下文长度、温度、频率惩罚和存在惩罚。
+ * ModelConfig 类用于配置模型的相关参数，包括模型名称、URL、上下文长度、温度、频率惩罚、存在惩罚、分词编码、令牌价格、API 密钥和本地推理服务的槽位数。
  */
 @Data
 public class ModelConfig {
@@ -13,6 +13,12 @@ public class ModelConfig {
     public double temperature;
     public int frequencyPenalty;
     public int presencePenalty;
+    public String encoding;
+    public double promptPrice;
+    public double completionPrice;
+    public String[] apiKeys;
+    public String[] backupUrls;
+    public int slots;
 
     /**
      * 私有构造函数，通过 Builder 初始化 ModelConfig 对象。
@@ -26,6 +32,21 @@ public class ModelConfig {
         this.temperature = builder.temperature;
         this.frequencyPenalty = builder.frequencyPenalty;
         this.presencePenalty = builder.presencePenalty;
+        this.encoding = builder.encoding;
+        this.promptPrice = builder.promptPrice;
+        this.completionPrice = builder.completionPrice;
+        this.apiKeys = builder.apiKeys;
+        this.backupUrls = builder.backupUrls;
+        this.slots = builder.slots;
+    }
+
+    /**
+     * 是否为本地推理服务。
+     *
+     * @return 配置了槽位数时返回 true。
+     */
+    public boolean isLocal() {
+        return slots != 0;
     }
 
     /**
@@ -38,6 +59,12 @@ public class ModelConfig {
         private double temperature = 0.5;
         private int frequencyPenalty = 0;
         private int presencePenalty = 0;
+        private String encoding = null;
+        private double promptPrice = 0;
+        private double completionPrice = 0;
+        private String[] apiKeys = null;
+        private String[] backupUrls = null;
+        private int slots = 0;
 
         /**
          * 设置模型名称。
@@ -105,6 +132,75 @@ public class ModelConfig {
             return this;
         }
 
+        /**
+         * 设置计算令牌数量使用的分词编码，例如 cl100k_base。
+         * 未设置时根据模型名称确定编码。
+         *
+         * @param encoding 分词编码名称。
+         * @return Builder 实例。
+         */
+        public Builder withEncoding(String encoding) {
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * 设置提示令牌的价格，单位为美元每 1000 个令牌，用于统计运行费用。
+         *
+         * @param promptPrice 提示令牌价格。
+         * @return Builder 实例。
+         */
+        public Builder withPromptPrice(double promptPrice) {
+            this.promptPrice = promptPrice;
+            return this;
+        }
+
+        /**
+         * 设置生成令牌的价格，单位为美元每 1000 个令牌，用于统计运行费用。
+         *
+         * @param completionPrice 生成令牌价格。
+         * @return Builder 实例。
+         */
+        public Builder withCompletionPrice(double completionPrice) {
+            this.completionPrice = completionPrice;
+            return this;
+        }
+
+        /**
+         * 设置访问该模型服务使用的 API 密钥。
+         * 未设置时使用 Config 中的 apiKeys。
+         *
+         * @param apiKeys API 密钥数组。
+         * @return Builder 实例。
+         */
+        public Builder withApiKeys(String[] apiKeys) {
+            this.apiKeys = apiKeys;
+            return this;
+        }
+
+        /**
+         * 设置备用的模型服务 URL，主 URL 不可用时依次切换到备用 URL。
+         *
+         * @param backupUrls 备用 URL 数组。
+         * @return Builder 实例。
+         */
+        public Builder withBackupUrls(String[] backupUrls) {
+            this.backupUrls = backupUrls;
+            return this;
+        }
+
+        /**
+         * 设置本地推理服务（如 llama.cpp server）的并行槽位数。大于 0 时按槽位数限制并发请求，
+         * 小于 0 时从服务的 /props 接口读取槽位数，为 0 时表示远程 API。本地服务不需要 API 密钥。
+         *
+         * @param slots 槽位数。
+         * @return Builder 实例。
+         */
+        public Builder withSlots(int slots) {
+            this.slots = slots;
+            return this;
+        }
+
         /**
          * 构建 ModelConfig 对象。
          *
@@ -2,6 +2,7 @@ package zju.cst.aces.api.impl;
 
 import zju.cst.aces.api.Generator;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
 import zju.cst.aces.dto.ChatResponse;
 import zju.cst.aces.dto.Message;
 import zju.cst.aces.runner.AbstractRunner;
@@ -46,7 +47,20 @@ public class ChatGenerator implements Generator {
      * @throws RuntimeException 如果响应为空。
      */
     public static ChatResponse chat(Config config, List<Message> messages) {
-        ChatResponse response = new AskGPT(config).askChatGPT(messages);
+        return chat(config, messages, config.getModel());
+    }
+
+    /**
+     * 使用提供的消息列表向指定模型发送聊天请求并返回响应。
+     *
+     * @param config 包含项目设置的配置对象。
+     * @param messages 要发送给模型的消息列表。
+     * @param model 处理请求的模型。
+     * @return 模型的响应。
+     * @throws RuntimeException 如果响应为空。
+     */
+    public static ChatResponse chat(Config config, List<Message> messages, Model model) {
+        ChatResponse response = new AskGPT(config).askChatGPT(messages, model);
         if (response == null) {
             throw new RuntimeException("响应为空，获取响应失败。");
         }
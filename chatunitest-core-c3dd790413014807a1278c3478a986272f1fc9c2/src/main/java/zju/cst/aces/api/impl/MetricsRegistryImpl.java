@@ -0,0 +1,188 @@
+package zju.cst.aces.api.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import zju.cst.aces.api.MetricsRegistry;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricsRegistryImpl 类实现了 MetricsRegistry 接口，在内存中聚合指标，并在运行结束时导出 JSON 和 CSV 格式的性能剖析文件。
+ */
+public class MetricsRegistryImpl implements MetricsRegistry {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final int MAX_TRACES = 100000;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<String, Stat> timers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, Stat> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Stat>> traces = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一个阶段的耗时，同时按追踪 ID 聚合。
+     *
+     * @param stage 阶段名称。
+     * @param traceId 追踪 ID，可以为 null。
+     * @param durationNanos 耗时（纳秒）。
+     */
+    @Override
+    public void recordTimer(String stage, String traceId, long durationNanos) {
+        timers.computeIfAbsent(stage, k -> new Stat()).record(durationNanos);
+        if (traceId == null) {
+            return;
+        }
+        Map<String, Stat> stages = traces.get(traceId);
+        if (stages == null) {
+            if (traces.size() >= MAX_TRACES) {
+                return;
+            }
+            stages = traces.computeIfAbsent(traceId, k -> new ConcurrentHashMap<>());
+        }
+        stages.computeIfAbsent(stage, k -> new Stat()).record(durationNanos);
+    }
+
+    /**
+     * 增加计数器的值。
+     *
+     * @param name 计数器名称。
+     * @param delta 增量。
+     */
+    @Override
+    public void incrementCounter(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * 向直方图中记录一个观测值。
+     *
+     * @param name 直方图名称。
+     * @param value 观测值。
+     */
+    @Override
+    public void recordHistogram(String name, long value) {
+        histograms.computeIfAbsent(name, k -> new Stat()).record(value);
+    }
+
+    /**
+     * 将指标导出为 profile_{runId}.json、profile_{runId}.csv 和 trace_{runId}.csv。
+     *
+     * @param outputDir 输出目录。
+     * @param runId 本次运行的标识。
+     */
+    @Override
+    public void export(Path outputDir, String runId) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("runId", runId);
+        Map<String, Object> timerSummary = new TreeMap<>();
+        timers.forEach((name, stat) -> timerSummary.put(name, stat.summary(NANOS_PER_MILLI)));
+        profile.put("timersMs", timerSummary);
+        Map<String, Long> counterSummary = new TreeMap<>();
+        counters.forEach((name, value) -> counterSummary.put(name, value.get()));
+        profile.put("counters", counterSummary);
+        Map<String, Object> histogramSummary = new TreeMap<>();
+        histograms.forEach((name, stat) -> histogramSummary.put(name, stat.summary(1.0)));
+        profile.put("histograms", histogramSummary);
+
+        StringBuilder profileCsv = new StringBuilder("type,name,count,total,mean,min,max,p50,p95,p99\n");
+        new TreeMap<>(timers).forEach((name, stat) -> appendCsv(profileCsv, "timer_ms", name, stat.summary(NANOS_PER_MILLI)));
+        new TreeMap<>(histograms).forEach((name, stat) -> appendCsv(profileCsv, "histogram", name, stat.summary(1.0)));
+        counterSummary.forEach((name, value) -> profileCsv.append("counter,").append(name).append(",").append(value)
+                .append(",").append(value).append(",,,,,,\n"));
+
+        StringBuilder traceCsv = new StringBuilder("trace,stage,count,total_ms,max_ms\n");
+        new TreeMap<>(traces).forEach((traceId, stages) -> new TreeMap<>(stages).forEach((stage, stat) -> {
+            Map<String, Object> s = stat.summary(NANOS_PER_MILLI);
+            traceCsv.append(traceId).append(",").append(stage).append(",").append(s.get("count"))
+                    .append(",").append(s.get("total")).append(",").append(s.get("max")).append("\n");
+        }));
+
+        try {
+            Files.createDirectories(outputDir);
+            write(outputDir.resolve("profile_" + runId + ".json"), GSON.toJson(profile));
+            write(outputDir.resolve("profile_" + runId + ".csv"), profileCsv.toString());
+            write(outputDir.resolve("trace_" + runId + ".csv"), traceCsv.toString());
+        } catch (IOException e) {
+            throw new RuntimeException("In MetricsRegistryImpl.export: " + e);
+        }
+    }
+
+    private static void appendCsv(StringBuilder sb, String type, String name, Map<String, Object> s) {
+        sb.append(type).append(",").append(name);
+        for (String key : new String[]{"count", "total", "mean", "min", "max", "p50", "p95", "p99"}) {
+            sb.append(",").append(s.get(key));
+        }
+        sb.append("\n");
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(path.toFile()), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    /**
+     * 单个指标的聚合值，使用以 2 为底的指数桶估算分位数。
+     */
+    static class Stat {
+        private final long[] buckets = new long[65];
+        private long count;
+        private long total;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        synchronized void record(long value) {
+            long v = Math.max(value, 0);
+            buckets[64 - Long.numberOfLeadingZeros(v)]++;
+            count++;
+            total += v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+
+        synchronized Map<String, Object> summary(double unit) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("count", count);
+            s.put("total", round(total / unit));
+            s.put("mean", count == 0 ? 0 : round(total / unit / count));
+            s.put("min", count == 0 ? 0 : round(min / unit));
+            s.put("max", count == 0 ? 0 : round(max / unit));
+            s.put("p50", round(percentile(0.50) / unit));
+            s.put("p95", round(percentile(0.95) / unit));
+            s.put("p99", round(percentile(0.99) / unit));
+            return s;
+        }
+
+        private long percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                    return Math.max(Math.min(upper, max), min);
+                }
+            }
+            return max;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
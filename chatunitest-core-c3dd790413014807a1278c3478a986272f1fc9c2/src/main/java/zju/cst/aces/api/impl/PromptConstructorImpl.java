@@ -104,7 +104,7 @@ public class PromptConstructorImpl implements PromptConstructor {
      */
     public void countToken() {
         for (Message p : messages) {
-            this.tokenCount += TokenCounter.countToken(p.getContent());
+            this.tokenCount += TokenCounter.countToken(p.getContent(), config.getModel());
         }
     }
 
@@ -8,10 +8,14 @@ import java.util.List;
 public class RoundRecord {
     public int attempt;
     public int round;
+    public String model;
     public List<Message> prompt;
     public String response;
     public int promptToken;
     public int responseToken;
+    public long promptTime; // ms spent building the prompt
+    public long generationTime; // ms spent on the LLM request and code extraction
+    public long validationTime; // ms spent compiling, executing and preparing the repair
     public boolean hasCode;
     public String code;
     public boolean hasError;
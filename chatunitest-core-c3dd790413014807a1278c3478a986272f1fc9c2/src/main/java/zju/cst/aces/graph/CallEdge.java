@@ -0,0 +1,11 @@
+package zju.cst.aces.graph;
+
+/**
+ * An edge from a calling method to a method it depends on.
+ */
+public class CallEdge extends Edge<MethodNode> {
+
+    public CallEdge(MethodNode caller, MethodNode callee) {
+        super(caller, callee);
+    }
+}
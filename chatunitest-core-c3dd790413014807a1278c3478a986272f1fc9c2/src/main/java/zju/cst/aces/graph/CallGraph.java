@@ -0,0 +1,90 @@
+package zju.cst.aces.graph;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * A call graph between methods. Nodes and edges are unique, the graph can be built while it is traversed.
+ */
+public class CallGraph extends Graph<MethodNode, CallEdge> {
+    private final Map<String, MethodNode> nodeIndex = new HashMap<>();
+    private final Set<String> edgeIndex = new HashSet<>();
+
+    public MethodNode getNode(String className, String methodSignature) {
+        return nodeIndex.get(MethodNode.key(className, methodSignature));
+    }
+
+    public MethodNode getOrAddNode(String className, String methodSignature) {
+        MethodNode node = nodeIndex.get(MethodNode.key(className, methodSignature));
+        if (node == null) {
+            node = new MethodNode(className, methodSignature);
+            nodeIndex.put(node.getData(), node);
+            addNode(node);
+        }
+        return node;
+    }
+
+    public void addCall(MethodNode caller, MethodNode callee) {
+        if (edgeIndex.add(caller.getData() + "->" + callee.getData())) {
+            addEdge(new CallEdge(caller, callee));
+        }
+    }
+
+    public List<MethodNode> getCallers(String className, String methodSignature) {
+        MethodNode node = getNode(className, methodSignature);
+        return node == null ? Collections.emptyList() : getPredecessors(node);
+    }
+
+    public List<MethodNode> getCallees(String className, String methodSignature) {
+        MethodNode node = getNode(className, methodSignature);
+        return node == null ? Collections.emptyList() : getSuccessors(node);
+    }
+
+    /**
+     * The methods the method calls directly or indirectly.
+     */
+    public List<MethodNode> getTransitiveCallees(String className, String methodSignature) {
+        MethodNode node = getNode(className, methodSignature);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<MethodNode> reachable = GraphHelper.bfs(this, node);
+        return reachable.subList(1, reachable.size());
+    }
+
+    /**
+     * The methods that call the method directly or indirectly.
+     */
+    public Set<MethodNode> getTransitiveCallers(String className, String methodSignature) {
+        MethodNode node = getNode(className, methodSignature);
+        return node == null ? Collections.emptySet() : GraphHelper.findPredecessors(this, node);
+    }
+
+    /**
+     * Breadth-first traversal from the start methods, each method is visited once.
+     * expander is called with every visited method and its depth (0 for the start methods), it returns the
+     * callees of the method and may add them to the graph. Callees are visited while their depth is at most maxDepth.
+     *
+     * @return the depth of every visited method, in visiting order
+     */
+    public Map<MethodNode, Integer> bfs(Collection<MethodNode> starts, int maxDepth,
+                                         BiFunction<MethodNode, Integer, Collection<MethodNode>> expander) {
+        Map<MethodNode, Integer> depths = new LinkedHashMap<>();
+        Queue<MethodNode> queue = new ArrayDeque<>();
+        for (MethodNode start : starts) {
+            if (depths.putIfAbsent(start, 0) == null) {
+                queue.add(start);
+            }
+        }
+        while (!queue.isEmpty()) {
+            MethodNode current = queue.poll();
+            int depth = depths.get(current);
+            for (MethodNode callee : expander.apply(current, depth)) {
+                if (depth + 1 <= maxDepth && depths.putIfAbsent(callee, depth + 1) == null) {
+                    queue.add(callee);
+                }
+            }
+        }
+        return depths;
+    }
+}
@@ -1,23 +1,46 @@
 package zju.cst.aces.graph;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 public abstract class Graph<N extends Node<?>, E extends Edge<N>> {
     private List<N> nodes;
     private List<E> edges;
+    // forward and reverse adjacency, every node has an entry
+    private Map<N, List<E>> outgoing;
+    private Map<N, List<E>> incoming;
 
     public Graph() {
         this.nodes = new ArrayList<>();
         this.edges = new ArrayList<>();
+        this.outgoing = new HashMap<>();
+        this.incoming = new HashMap<>();
     }
 
+    /**
+     * Add a node, a node that is already in the graph is ignored.
+     */
     public void addNode(N node) {
+        if (outgoing.containsKey(node)) {
+            return;
+        }
         nodes.add(node);
+        outgoing.put(node, new ArrayList<>());
+        incoming.put(node, new ArrayList<>());
     }
 
+    /**
+     * Add an edge, its source and target are added to the graph if needed.
+     */
     public void addEdge(E edge) {
+        addNode(edge.getSource());
+        addNode(edge.getTarget());
         edges.add(edge);
+        outgoing.get(edge.getSource()).add(edge);
+        incoming.get(edge.getTarget()).add(edge);
+    }
+
+    public boolean containsNode(N node) {
+        return outgoing.containsKey(node);
     }
 
     public List<N> getNodes() {
@@ -27,4 +50,28 @@ public abstract class Graph<N extends Node<?>, E extends Edge<N>> {
     public List<E> getEdges() {
         return edges;
     }
+
+    public List<E> getOutgoingEdges(N node) {
+        return outgoing.getOrDefault(node, Collections.emptyList());
+    }
+
+    public List<E> getIncomingEdges(N node) {
+        return incoming.getOrDefault(node, Collections.emptyList());
+    }
+
+    public List<N> getSuccessors(N node) {
+        List<N> successors = new ArrayList<>();
+        for (E edge : getOutgoingEdges(node)) {
+            successors.add(edge.getTarget());
+        }
+        return successors;
+    }
+
+    public List<N> getPredecessors(N node) {
+        List<N> predecessors = new ArrayList<>();
+        for (E edge : getIncomingEdges(node)) {
+            predecessors.add(edge.getSource());
+        }
+        return predecessors;
+    }
 }
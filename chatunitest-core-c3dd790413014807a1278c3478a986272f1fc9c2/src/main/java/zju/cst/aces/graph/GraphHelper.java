@@ -2,18 +2,20 @@ package zju.cst.aces.graph;
 
 import java.util.*;
 
-class GraphHelper {
+/**
+ * Traversals over the adjacency of a {@link Graph}, each runs in O(V + E) of the part of the graph it reaches.
+ */
+public class GraphHelper {
 
     public static <N extends Node<?>, E extends Edge<N>> Set<N> findPredecessors(Graph<N, E> graph, N startNode) {
         Set<N> predecessors = new HashSet<>();
-        Queue<N> queue = new LinkedList<>();
+        Queue<N> queue = new ArrayDeque<>();
         queue.add(startNode);
 
         while (!queue.isEmpty()) {
             N current = queue.poll();
-            for (E edge : graph.getEdges()) {
-                if (edge.getTarget().equals(current) && !predecessors.contains(edge.getSource())) {
-                    predecessors.add(edge.getSource());
+            for (E edge : graph.getIncomingEdges(current)) {
+                if (predecessors.add(edge.getSource())) {
                     queue.add(edge.getSource());
                 }
             }
@@ -24,15 +26,16 @@ class GraphHelper {
 
     public static <N extends Node<?>, E extends Edge<N>> List<N> dfs(Graph<N, E> graph, N startNode) {
         List<N> visited = new ArrayList<>();
-        Stack<N> stack = new Stack<>();
+        Set<N> seen = new HashSet<>();
+        Deque<N> stack = new ArrayDeque<>();
         stack.push(startNode);
 
         while (!stack.isEmpty()) {
             N current = stack.pop();
-            if (!visited.contains(current)) {
+            if (seen.add(current)) {
                 visited.add(current);
-                for (E edge : graph.getEdges()) {
-                    if (edge.getSource().equals(current)) {
+                for (E edge : graph.getOutgoingEdges(current)) {
+                    if (!seen.contains(edge.getTarget())) {
                         stack.push(edge.getTarget());
                     }
                 }
@@ -44,21 +47,139 @@ class GraphHelper {
 
     public static <N extends Node<?>, E extends Edge<N>> List<N> bfs(Graph<N, E> graph, N startNode) {
         List<N> visited = new ArrayList<>();
-        Queue<N> queue = new LinkedList<>();
+        Set<N> seen = new HashSet<>();
+        Queue<N> queue = new ArrayDeque<>();
+        seen.add(startNode);
         queue.add(startNode);
 
         while (!queue.isEmpty()) {
             N current = queue.poll();
-            if (!visited.contains(current)) {
-                visited.add(current);
-                for (E edge : graph.getEdges()) {
-                    if (edge.getSource().equals(current)) {
-                        queue.add(edge.getTarget());
-                    }
+            visited.add(current);
+            for (E edge : graph.getOutgoingEdges(current)) {
+                if (seen.add(edge.getTarget())) {
+                    queue.add(edge.getTarget());
                 }
             }
         }
 
         return visited;
     }
-}
\ No newline at end of file
+
+    /**
+     * Order the nodes so that every edge goes from an earlier to a later node (Kahn's algorithm).
+     *
+     * @throws IllegalArgumentException if the graph has a cycle, see {@link #stronglyConnectedComponents(Graph)}
+     */
+    public static <N extends Node<?>, E extends Edge<N>> List<N> topologicalSort(Graph<N, E> graph) {
+        Map<N, Integer> inDegree = new HashMap<>();
+        Queue<N> queue = new ArrayDeque<>();
+        for (N node : graph.getNodes()) {
+            int degree = graph.getIncomingEdges(node).size();
+            inDegree.put(node, degree);
+            if (degree == 0) {
+                queue.add(node);
+            }
+        }
+
+        List<N> order = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            N current = queue.poll();
+            order.add(current);
+            for (E edge : graph.getOutgoingEdges(current)) {
+                if (inDegree.merge(edge.getTarget(), -1, Integer::sum) == 0) {
+                    queue.add(edge.getTarget());
+                }
+            }
+        }
+        if (order.size() < graph.getNodes().size()) {
+            throw new IllegalArgumentException("In GraphHelper.topologicalSort: the graph has a cycle");
+        }
+        return order;
+    }
+
+    /**
+     * The strongly connected components of the graph (Tarjan's algorithm, without recursion).
+     * A component comes after every component it has an edge to, e.g. callees before their callers in a call graph.
+     */
+    public static <N extends Node<?>, E extends Edge<N>> List<List<N>> stronglyConnectedComponents(Graph<N, E> graph) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Set<N> onStack = new HashSet<>();
+        Deque<N> stack = new ArrayDeque<>();
+        List<List<N>> components = new ArrayList<>();
+
+        for (N root : graph.getNodes()) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            // each frame is a node and the position of the next outgoing edge to visit
+            Deque<Map.Entry<N, Iterator<E>>> frames = new ArrayDeque<>();
+            visit(root, index, lowLink, onStack, stack);
+            frames.push(new AbstractMap.SimpleEntry<>(root, graph.getOutgoingEdges(root).iterator()));
+
+            while (!frames.isEmpty()) {
+                N current = frames.peek().getKey();
+                Iterator<E> edges = frames.peek().getValue();
+                if (edges.hasNext()) {
+                    N target = edges.next().getTarget();
+                    if (!index.containsKey(target)) {
+                        visit(target, index, lowLink, onStack, stack);
+                        frames.push(new AbstractMap.SimpleEntry<>(target, graph.getOutgoingEdges(target).iterator()));
+                    } else if (onStack.contains(target)) {
+                        lowLink.put(current, Math.min(lowLink.get(current), index.get(target)));
+                    }
+                    continue;
+                }
+
+                frames.pop();
+                if (!frames.isEmpty()) {
+                    N parent = frames.peek().getKey();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(current)));
+                }
+                if (lowLink.get(current).equals(index.get(current))) {
+                    List<N> component = new ArrayList<>();
+                    N member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(current));
+                    components.add(component);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * The dependency level of every node: 0 for nodes without outgoing edges, otherwise one more than the highest
+     * level among the nodes it has an edge to. Nodes of a cycle share a level, so processing the levels in
+     * ascending order handles every node after the nodes it depends on.
+     */
+    public static <N extends Node<?>, E extends Edge<N>> Map<N, Integer> dependencyLevels(Graph<N, E> graph) {
+        Map<N, Integer> levels = new HashMap<>();
+        for (List<N> component : stronglyConnectedComponents(graph)) {
+            Set<N> members = new HashSet<>(component);
+            int level = 0;
+            for (N member : component) {
+                for (E edge : graph.getOutgoingEdges(member)) {
+                    if (!members.contains(edge.getTarget())) {
+                        level = Math.max(level, levels.get(edge.getTarget()) + 1);
+                    }
+                }
+            }
+            for (N member : component) {
+                levels.put(member, level);
+            }
+        }
+        return levels;
+    }
+
+    private static <N> void visit(N node, Map<N, Integer> index, Map<N, Integer> lowLink, Set<N> onStack, Deque<N> stack) {
+        index.put(node, index.size());
+        lowLink.put(node, index.get(node));
+        stack.push(node);
+        onStack.add(node);
+    }
+}
@@ -0,0 +1,84 @@
+package zju.cst.aces.graph;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Saves and loads call and type graphs. A graph is stored as one compact json document with the node keys
+ * and the edges as pairs of node indexes, so it is loaded with a single read.
+ */
+public class GraphStore {
+    private static final Gson GSON = new Gson();
+
+    public static void save(CallGraph graph, Path path) throws IOException {
+        write(graph, path);
+    }
+
+    public static void save(TypeGraph graph, Path path) throws IOException {
+        write(graph, path);
+    }
+
+    public static CallGraph loadCallGraph(Path path) throws IOException {
+        StoredGraph stored = read(path);
+        CallGraph graph = new CallGraph();
+        List<MethodNode> nodes = new ArrayList<>(stored.nodes.size());
+        for (String key : stored.nodes) {
+            int separator = key.indexOf('#');
+            nodes.add(graph.getOrAddNode(key.substring(0, separator), key.substring(separator + 1)));
+        }
+        for (int i = 0; i + 1 < stored.edges.length; i += 2) {
+            graph.addCall(nodes.get(stored.edges[i]), nodes.get(stored.edges[i + 1]));
+        }
+        return graph;
+    }
+
+    public static TypeGraph loadTypeGraph(Path path) throws IOException {
+        StoredGraph stored = read(path);
+        TypeGraph graph = new TypeGraph();
+        List<TypeNode> nodes = new ArrayList<>(stored.nodes.size());
+        for (String key : stored.nodes) {
+            nodes.add(graph.getOrAddNode(key));
+        }
+        for (int i = 0; i + 1 < stored.edges.length; i += 2) {
+            graph.addDependency(nodes.get(stored.edges[i]), nodes.get(stored.edges[i + 1]));
+        }
+        return graph;
+    }
+
+    private static <N extends Node<String>, E extends Edge<N>> void write(Graph<N, E> graph, Path path) throws IOException {
+        StoredGraph stored = new StoredGraph();
+        Map<N, Integer> indexes = new HashMap<>();
+        for (N node : graph.getNodes()) {
+            indexes.put(node, stored.nodes.size());
+            stored.nodes.add(node.getData());
+        }
+        stored.edges = new int[graph.getEdges().size() * 2];
+        int i = 0;
+        for (E edge : graph.getEdges()) {
+            stored.edges[i++] = indexes.get(edge.getSource());
+            stored.edges[i++] = indexes.get(edge.getTarget());
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, GSON.toJson(stored), StandardCharsets.UTF_8);
+    }
+
+    private static StoredGraph read(Path path) throws IOException {
+        StoredGraph stored = GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), StoredGraph.class);
+        if (stored == null || stored.nodes == null || stored.edges == null) {
+            throw new IOException("In GraphStore.read: invalid graph file " + path);
+        }
+        return stored;
+    }
+
+    private static class StoredGraph {
+        List<String> nodes = new ArrayList<>();
+        int[] edges = new int[0];
+    }
+}
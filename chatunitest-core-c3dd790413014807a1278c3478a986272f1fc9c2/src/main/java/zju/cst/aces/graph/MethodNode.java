@@ -0,0 +1,50 @@
+package zju.cst.aces.graph;
+
+import java.util.Objects;
+
+/**
+ * A method in the call graph, identified by its class name and method signature.
+ */
+public class MethodNode extends Node<String> {
+    private final String className;
+    private final String methodSignature;
+
+    public MethodNode(String className, String methodSignature) {
+        super(key(className, methodSignature));
+        this.className = className;
+        this.methodSignature = methodSignature;
+    }
+
+    public static String key(String className, String methodSignature) {
+        return className + "#" + methodSignature;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodNode)) {
+            return false;
+        }
+        return Objects.equals(getData(), ((MethodNode) o).getData());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getData());
+    }
+
+    @Override
+    public String toString() {
+        return getData();
+    }
+}
@@ -0,0 +1,11 @@
+package zju.cst.aces.graph;
+
+/**
+ * An edge from a class to a class it uses, e.g. through a method call or a parameter type.
+ */
+public class TypeEdge extends Edge<TypeNode> {
+
+    public TypeEdge(TypeNode source, TypeNode target) {
+        super(source, target);
+    }
+}
@@ -0,0 +1,51 @@
+package zju.cst.aces.graph;
+
+import java.util.*;
+
+/**
+ * The dependencies between the classes of a project. Nodes and edges are unique.
+ */
+public class TypeGraph extends Graph<TypeNode, TypeEdge> {
+    private final Map<String, TypeNode> nodeIndex = new HashMap<>();
+    private final Set<String> edgeIndex = new HashSet<>();
+
+    public TypeNode getNode(String fullClassName) {
+        return nodeIndex.get(fullClassName);
+    }
+
+    public TypeNode getOrAddNode(String fullClassName) {
+        TypeNode node = nodeIndex.get(fullClassName);
+        if (node == null) {
+            node = new TypeNode(fullClassName);
+            nodeIndex.put(fullClassName, node);
+            addNode(node);
+        }
+        return node;
+    }
+
+    public void addDependency(TypeNode source, TypeNode target) {
+        if (edgeIndex.add(source.getData() + "->" + target.getData())) {
+            addEdge(new TypeEdge(source, target));
+        }
+    }
+
+    /**
+     * The classes that use the class directly or indirectly.
+     */
+    public Set<TypeNode> getDependents(String fullClassName) {
+        TypeNode node = getNode(fullClassName);
+        return node == null ? Collections.emptySet() : GraphHelper.findPredecessors(this, node);
+    }
+
+    /**
+     * The classes the class uses directly or indirectly.
+     */
+    public List<TypeNode> getDependencies(String fullClassName) {
+        TypeNode node = getNode(fullClassName);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<TypeNode> reachable = GraphHelper.bfs(this, node);
+        return reachable.subList(1, reachable.size());
+    }
+}
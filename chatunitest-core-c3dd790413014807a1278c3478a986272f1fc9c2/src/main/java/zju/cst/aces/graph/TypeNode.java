@@ -0,0 +1,34 @@
+package zju.cst.aces.graph;
+
+import java.util.Objects;
+
+/**
+ * A class in the type dependency graph, identified by its full class name.
+ */
+public class TypeNode extends Node<String> {
+
+    public TypeNode(String fullClassName) {
+        super(fullClassName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TypeNode)) {
+            return false;
+        }
+        return Objects.equals(getData(), ((TypeNode) o).getData());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getData());
+    }
+
+    @Override
+    public String toString() {
+        return getData();
+    }
+}
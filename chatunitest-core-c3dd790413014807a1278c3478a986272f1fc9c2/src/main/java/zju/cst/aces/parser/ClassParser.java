@@ -16,6 +16,11 @@ import org.jetbrains.annotations.NotNull;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.graph.CallGraph;
+import zju.cst.aces.graph.MethodNode;
+import zju.cst.aces.graph.TypeGraph;
+import zju.cst.aces.graph.TypeNode;
+import zju.cst.aces.util.jfr.ParseClassEvent;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -33,6 +38,8 @@ public class ClassParser {
     private static JavaParser parser;
     public int methodCount = 0;
     private final Config config;
+    private CallGraph callGraph;
+    private TypeGraph typeGraph;
 
     public ClassParser(Config config, String path) {
         this.config = config;
@@ -46,11 +53,24 @@ public class ClassParser {
         setOutputPath(path.toString());
     }
 
+    /**
+     * Record the method calls and class dependencies of the parsed classes into the graphs.
+     */
+    public void setGraphs(CallGraph callGraph, TypeGraph typeGraph) {
+        this.callGraph = callGraph;
+        this.typeGraph = typeGraph;
+    }
+
     public int extractClass(String classPath) throws FileNotFoundException {
+        ParseClassEvent event = new ParseClassEvent();
+        event.begin();
+        event.sourceFile = classPath;
         File file = new File(classPath);
         ParseResult<CompilationUnit> parseResult = parser.parse(file);
         CompilationUnit cu = parseResult.getResult().orElseThrow();
         List<ClassOrInterfaceDeclaration> classes = cu.findAll(ClassOrInterfaceDeclaration.class);
+        event.classes = classes.size();
+        boolean success = true;
         for (ClassOrInterfaceDeclaration classDeclaration : classes) {
             try {
                 classInfo = getInfoByClass(cu, classDeclaration);
@@ -62,8 +82,10 @@ public class ClassParser {
                 methodCount += classDeclaration.getMethods().size();
             } catch (Exception e) {
                 config.getLog().error("In ClassParser.extractClass Exception: when parse class " + classDeclaration.getNameAsString() + " :\n" + e);
+                success = false;
             }
         }
+        event.finish(success);
         return classes.size();
     }
 
@@ -142,9 +164,29 @@ public class ClassParser {
         mi.setPublic(isPublic(node));
         mi.setBoolean(isBoolean(node));
         mi.setAbstract(node.isAbstract());
+        addToGraphs(cu, classNode, mi);
         return mi;
     }
 
+    private void addToGraphs(CompilationUnit cu, ClassOrInterfaceDeclaration classNode, MethodInfo mi) {
+        if (callGraph == null || typeGraph == null) {
+            return;
+        }
+        String fullClassName = cu.getPackageDeclaration()
+                .map(p -> p.getNameAsString() + "." + classNode.getNameAsString())
+                .orElse(classNode.getNameAsString());
+        MethodNode caller = callGraph.getOrAddNode(fullClassName, mi.methodSignature);
+        TypeNode source = typeGraph.getOrAddNode(fullClassName);
+        for (Map.Entry<String, Set<String>> entry : mi.dependentMethods.entrySet()) {
+            if (!entry.getKey().equals(fullClassName)) {
+                typeGraph.addDependency(source, typeGraph.getOrAddNode(entry.getKey()));
+            }
+            for (String sig : entry.getValue()) {
+                callGraph.addCall(caller, callGraph.getOrAddNode(entry.getKey(), sig));
+            }
+        }
+    }
+
     private Map<String, Set<String>> getConstructorDeps(CompilationUnit cu, ClassOrInterfaceDeclaration classNode) {
         Map<String, Set<String>> constructorDeps = new LinkedHashMap<>();
         for (ConstructorDeclaration c : classNode.getConstructors()) {
@@ -12,6 +12,11 @@ import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeS
 import org.apache.maven.shared.dependency.graph.DependencyNode;
 import zju.cst.aces.api.Project;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.graph.CallGraph;
+import zju.cst.aces.graph.GraphStore;
+import zju.cst.aces.graph.TypeGraph;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.RunCaches;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -49,17 +54,24 @@ public class ProjectParser {
      * Parse the project.
      */
     public void parse() {
+        RunCaches.clear();
         List<String> classPaths = scanSourceDirectory(config.getProject());
         if (classPaths.isEmpty()) {
             config.getLog().warn("No java file found in " + srcFolderPath);
             return;
         }
+        CallGraph callGraph = new CallGraph();
+        TypeGraph typeGraph = new TypeGraph();
         for (String classPath : classPaths) {
             try {
                 String packagePath = classPath.substring(srcFolderPath.toString().length() + 1);
                 Path output = outputPath.resolve(packagePath).getParent();
                 ClassParser classParser = new ClassParser(config, output);
-                int classNum = classParser.extractClass(classPath);
+                classParser.setGraphs(callGraph, typeGraph);
+                int classNum;
+                try (Metrics.Stage stage = Metrics.start("parse")) {
+                    classNum = classParser.extractClass(classPath);
+                }
 
                 if (classNum == 0) {
                     continue;
@@ -73,6 +85,7 @@ public class ProjectParser {
         }
         exportClassMapping();
         exportJson(config.getClassNameMapPath(), classMap);
+        exportGraphs(callGraph, typeGraph);
         config.getLog().info("\nParsed classes: " + classCount + "\nParsed methods: " + methodCount);
     }
 
@@ -168,6 +181,19 @@ public class ProjectParser {
         }
     }
 
+    public void exportGraphs(CallGraph callGraph, TypeGraph typeGraph) {
+        try {
+            if (config.getCallGraphPath() != null) {
+                GraphStore.save(callGraph, config.getCallGraphPath());
+            }
+            if (config.getTypeGraphPath() != null) {
+                GraphStore.save(typeGraph, config.getTypeGraphPath());
+            }
+        } catch (IOException e) {
+            config.getLog().warn("Failed to export the call graph: " + e);
+        }
+    }
+
     public void exportClassMapping() {
         Path savePath = config.tmpOutput.resolve("classMapping.json");
         exportJson(savePath, config.classMapping);
@@ -0,0 +1,154 @@
+package zju.cst.aces.prompt;
+
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.util.TokenCounter;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ranks the dependent classes of a focal method and keeps the most useful ones within the prompt token budget.
+ * A dependency is scored with BM25 over the identifiers of the focal method, divided by its distance in the
+ * call graph (1 for classes the focal method or class uses directly, 2 for classes reached through them).
+ * The kept dependencies are ordered by score, so the truncation of the rendered prompt drops the least useful first.
+ */
+public class DependencyRanker {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_]\\w*");
+    private static final Pattern CAMEL_CASE_PATTERN = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])|_");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "public", "private", "protected", "static", "final", "void", "return", "new", "this", "null",
+            "if", "else", "for", "while", "try", "catch", "throw", "throws", "class", "import", "package",
+            "int", "long", "boolean", "double", "string", "true", "false"
+    ));
+
+    private final Model model;
+
+    public DependencyRanker(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Replace the constructor and method dependencies of the prompt info with the best ranked ones
+     * that fit into budgetTokens, next to the focal context.
+     *
+     * @param directDeps the class names the focal class or method depends on directly
+     */
+    public void select(PromptInfo promptInfo, Set<String> directDeps, int budgetTokens) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, String> entry : promptInfo.getConstructorDeps().entrySet()) {
+            candidates.add(new Candidate(true, entry.getKey(), entry.getValue(), directDeps.contains(entry.getKey()) ? 1 : 2));
+        }
+        for (Map.Entry<String, String> entry : promptInfo.getMethodDeps().entrySet()) {
+            candidates.add(new Candidate(false, entry.getKey(), entry.getValue(), directDeps.contains(entry.getKey()) ? 1 : 2));
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        String focalCode = promptInfo.getMethodInfo() == null ? promptInfo.getContext() : promptInfo.getMethodInfo().sourceCode;
+        score(candidates, terms(focalCode));
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> -c.score));
+
+        int availableTokens = budgetTokens - count(promptInfo.getContext())
+                - count(promptInfo.getOtherMethodBrief()) - count(promptInfo.getOtherMethodBodies());
+        Map<String, String> constructorDeps = new LinkedHashMap<>();
+        Map<String, String> methodDeps = new LinkedHashMap<>();
+        int usedTokens = 0;
+        for (Candidate candidate : candidates) {
+            int tokens = count(candidate.className) + count(candidate.code);
+            if (usedTokens + tokens > availableTokens) {
+                continue;
+            }
+            usedTokens += tokens;
+            (candidate.constructorDep ? constructorDeps : methodDeps).put(candidate.className, candidate.code);
+        }
+        promptInfo.setConstructorDeps(constructorDeps);
+        promptInfo.setMethodDeps(methodDeps);
+    }
+
+    private void score(List<Candidate> candidates, List<String> query) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        double totalLength = 0;
+        for (Candidate candidate : candidates) {
+            for (String term : candidate.termFrequency.keySet()) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+            totalLength += candidate.length;
+        }
+        double averageLength = Math.max(totalLength / candidates.size(), 1);
+        int n = candidates.size();
+        Set<String> queryTerms = new LinkedHashSet<>(query);
+        for (Candidate candidate : candidates) {
+            double score = 0;
+            for (String term : queryTerms) {
+                Integer tf = candidate.termFrequency.get(term);
+                if (tf == null) {
+                    continue;
+                }
+                int df = documentFrequency.get(term);
+                double idf = Math.log((n - df + 0.5) / (df + 0.5) + 1);
+                score += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * candidate.length / averageLength));
+            }
+            candidate.score = score / candidate.distance;
+        }
+    }
+
+    /**
+     * Lower-cased identifiers and their camel case parts, without Java keywords.
+     */
+    static List<String> terms(String code) {
+        List<String> terms = new ArrayList<>();
+        if (code == null) {
+            return terms;
+        }
+        Matcher matcher = IDENTIFIER_PATTERN.matcher(code);
+        while (matcher.find()) {
+            String identifier = matcher.group();
+            addTerm(terms, identifier);
+            String[] parts = CAMEL_CASE_PATTERN.split(identifier);
+            if (parts.length > 1) {
+                for (String part : parts) {
+                    addTerm(terms, part);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String term) {
+        String lower = term.toLowerCase();
+        if (lower.length() > 1 && !STOP_WORDS.contains(lower)) {
+            terms.add(lower);
+        }
+    }
+
+    private int count(String text) {
+        return TokenCounter.countToken(text, model);
+    }
+
+    private static class Candidate {
+        final boolean constructorDep;
+        final String className;
+        final String code;
+        final int distance;
+        final Map<String, Integer> termFrequency = new HashMap<>();
+        final int length;
+        double score;
+
+        Candidate(boolean constructorDep, String className, String code, int distance) {
+            this.constructorDep = constructorDep;
+            this.className = className;
+            this.code = code;
+            this.distance = distance;
+            List<String> terms = terms(code);
+            for (String term : terms) {
+                termFrequency.merge(term, 1, Integer::sum);
+            }
+            this.length = terms.size();
+        }
+    }
+}
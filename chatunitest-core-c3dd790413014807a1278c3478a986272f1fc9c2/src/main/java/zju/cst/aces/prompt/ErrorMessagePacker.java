@@ -0,0 +1,98 @@
+package zju.cst.aces.prompt;
+
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.util.TokenCounter;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Packs the error messages of a failed test into the token budget of the repair prompt.
+ * Each message is tokenized once, messages are ranked so that root causes come before the
+ * errors they cascade into, and the first error reported on a line wins.
+ */
+public class ErrorMessagePacker {
+    // "Error in <test>: line <n> : <message>", see TestCompiler.compileTest and MethodRunner.runTest
+    private static final Pattern LINE_PATTERN = Pattern.compile(": line (-?\\d+) : ");
+
+    // Unresolved symbols, missing packages and access violations, usually what the repair has to fix
+    private static final String[] ROOT_CAUSES = {
+            "cannot find symbol", "does not exist", "cannot access", "has private access", "is not public",
+            "is abstract; cannot be instantiated", "unreported exception"
+    };
+
+    // Errors that typically follow from an earlier unresolved symbol or type mismatch
+    private static final String[] CASCADES = {
+            "incompatible types", "cannot be applied to", "no suitable", "cannot be dereferenced",
+            "might not have been initialized", "unreachable statement", "bad operand type"
+    };
+
+    public static String pack(List<String> errors, int allowedTokens, Model model) {
+        List<Entry> entries = new ArrayList<>();
+        Set<String> seenLines = new HashSet<>();
+        Set<String> seenMessages = new HashSet<>();
+        for (int i = 0; i < errors.size(); i++) {
+            String error = errors.get(i);
+            if (error == null || error.isEmpty()) {
+                continue;
+            }
+            Matcher matcher = LINE_PATTERN.matcher(error);
+            String line = null;
+            String message = error;
+            if (matcher.find()) {
+                line = error.substring(0, matcher.start()) + "#" + matcher.group(1);
+                message = error.substring(matcher.end());
+            }
+            if (line != null && !seenLines.add(line)) {
+                continue;
+            }
+            if (!seenMessages.add(message)) {
+                continue;
+            }
+            entries.add(new Entry(error, rank(message), i));
+        }
+        entries.sort(Comparator.comparingInt((Entry e) -> e.rank).thenComparingInt(e -> e.index));
+
+        StringBuilder packed = new StringBuilder();
+        int usedTokens = 0;
+        for (Entry entry : entries) {
+            if (usedTokens >= allowedTokens) {
+                break;
+            }
+            String text = entry.error + "\n";
+            int tokens = TokenCounter.countToken(text, model);
+            if (usedTokens + tokens <= allowedTokens) {
+                packed.append(text);
+                usedTokens += tokens;
+            }
+        }
+        return packed.toString();
+    }
+
+    static int rank(String message) {
+        for (String rootCause : ROOT_CAUSES) {
+            if (message.contains(rootCause)) {
+                return 0;
+            }
+        }
+        for (String cascade : CASCADES) {
+            if (message.contains(cascade)) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private static class Entry {
+        final String error;
+        final int rank;
+        final int index;
+
+        Entry(String error, int rank, int index) {
+            this.error = error;
+            this.rank = rank;
+            this.index = index;
+        }
+    }
+}
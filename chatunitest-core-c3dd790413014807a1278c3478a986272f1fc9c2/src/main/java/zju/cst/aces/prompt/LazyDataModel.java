@@ -0,0 +1,98 @@
+package zju.cst.aces.prompt;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A template data model whose variables are computed when the template first dereferences them.
+ * FreeMarker reads a Map data model through {@link #get(Object)}, so variables a template does not use
+ * are never computed. Computed values are kept until the variable is replaced, {@link #reset()} drops the
+ * values put since (e.g. truncated ones) and falls back to the computed ones.
+ */
+public class LazyDataModel extends AbstractMap<String, Object> {
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Loader> loaders = new LinkedHashMap<>();
+
+    @FunctionalInterface
+    public interface Loader {
+        Object load() throws IOException;
+    }
+
+    public void putLazy(String key, Loader loader) {
+        values.remove(key);
+        loaders.put(key, new Memo(loader));
+    }
+
+    /**
+     * Drop the values put on top of the lazy variables.
+     */
+    public void reset() {
+        values.clear();
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (values.containsKey(key)) {
+            return values.get(key);
+        }
+        Loader loader = loaders.get(key);
+        if (loader == null) {
+            return null;
+        }
+        try {
+            return loader.load();
+        } catch (IOException e) {
+            throw new RuntimeException("In LazyDataModel.get: " + e);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return values.containsKey(key) || loaders.containsKey(key);
+    }
+
+    /**
+     * Returns the value previously put for the key, a lazy variable is not computed for it.
+     */
+    @Override
+    public Object put(String key, Object value) {
+        return values.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        loaders.remove(key);
+        return values.remove(key);
+    }
+
+    /**
+     * Computes all lazy variables.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (String key : loaders.keySet()) {
+            snapshot.put(key, get(key));
+        }
+        snapshot.putAll(values);
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    private static class Memo implements Loader {
+        private Loader loader;
+        private Object value;
+
+        Memo(Loader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public Object load() throws IOException {
+            if (loader != null) {
+                value = loader.load();
+                loader = null;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package zju.cst.aces.prompt;
+
+import zju.cst.aces.api.Logger;
+import zju.cst.aces.api.Project;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.parser.ProjectParser;
+import zju.cst.aces.util.RunCaches;
+import zju.cst.aces.util.TokenCounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the source code of a project for the project_full_code template variable.
+ * The source files are read once per source root and parse of the project, together with the capitalized
+ * identifiers each file uses. Each prompt gets the files most related to the focal class that fit into a token
+ * budget instead of the whole project.
+ */
+public class ProjectCodeProvider {
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("\\b[A-Z]\\w*");
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final Map<String, ProjectCodeProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+    static {
+        RunCaches.register(PROVIDERS::clear);
+    }
+
+    private final List<SourceFile> sourceFiles = new ArrayList<>();
+
+    public static ProjectCodeProvider getInstance(Project project, Logger log) {
+        String sourceRoot = project.getCompileSourceRoots().get(0);
+        return PROVIDERS.computeIfAbsent(sourceRoot, k -> new ProjectCodeProvider(project, log));
+    }
+
+    private ProjectCodeProvider(Project project, Logger log) {
+        for (String path : ProjectParser.scanSourceDirectory(project)) {
+            String className = path.substring(path.lastIndexOf(File.separator) + 1, path.lastIndexOf("."));
+            try {
+                String code = Files.readString(Paths.get(path), StandardCharsets.UTF_8);
+                sourceFiles.add(new SourceFile(className, packageOf(code), code));
+            } catch (IOException e) {
+                log.warn("Failed to read class code for " + className);
+            }
+        }
+    }
+
+    /**
+     * The source files of the project except the focal class, most related first, within budgetTokens.
+     * A file is related when the focal class uses its class name, when it uses the focal class name,
+     * or when it is in the same package.
+     */
+    public String getProjectCode(String className, String focalCode, int budgetTokens, Model model) {
+        Set<String> focalReferences = identifiersOf(focalCode == null ? "" : focalCode);
+        String focalPackage = packageOf(focalCode == null ? "" : focalCode);
+
+        List<SourceFile> candidates = new ArrayList<>();
+        Map<SourceFile, Integer> scores = new HashMap<>();
+        for (SourceFile sourceFile : sourceFiles) {
+            if (sourceFile.className.equals(className)) {
+                continue;
+            }
+            int score = 0;
+            if (focalReferences.contains(sourceFile.className)) {
+                score += 4;
+            }
+            if (sourceFile.identifiers.contains(className)) {
+                score += 2;
+            }
+            if (sourceFile.packageName.equals(focalPackage)) {
+                score += 1;
+            }
+            candidates.add(sourceFile);
+            scores.put(sourceFile, score);
+        }
+        // stable sort, files with the same score keep the order of the source tree
+        candidates.sort(Comparator.comparingInt((SourceFile f) -> -scores.get(f)));
+
+        StringBuilder projectCode = new StringBuilder();
+        int usedTokens = 0;
+        for (SourceFile sourceFile : candidates) {
+            int tokens = sourceFile.tokens(model);
+            if (usedTokens + tokens > budgetTokens) {
+                continue;
+            }
+            projectCode.append(sourceFile.code).append("\n");
+            usedTokens += tokens;
+        }
+        return projectCode.toString();
+    }
+
+    private static Set<String> identifiersOf(String code) {
+        Set<String> identifiers = new HashSet<>();
+        Matcher matcher = IDENTIFIER_PATTERN.matcher(code);
+        while (matcher.find()) {
+            identifiers.add(matcher.group());
+        }
+        return identifiers;
+    }
+
+    private static String packageOf(String code) {
+        Matcher matcher = PACKAGE_PATTERN.matcher(code);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static class SourceFile {
+        final String className;
+        final String packageName;
+        final String code;
+        final Set<String> identifiers;
+        private final Map<Model, Integer> tokens = new ConcurrentHashMap<>();
+
+        SourceFile(String className, String packageName, String code) {
+            this.className = className;
+            this.packageName = packageName;
+            this.code = code;
+            this.identifiers = identifiersOf(code);
+        }
+
+        int tokens(Model model) {
+            if (model == null) {
+                return TokenCounter.countToken(code + "\n");
+            }
+            return tokens.computeIfAbsent(model, m -> TokenCounter.countToken(code + "\n", m));
+        }
+    }
+}
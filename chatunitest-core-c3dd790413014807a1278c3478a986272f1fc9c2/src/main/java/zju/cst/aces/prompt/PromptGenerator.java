@@ -1,7 +1,9 @@
 package zju.cst.aces.prompt;
 
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.util.Metrics;
 import zju.cst.aces.util.TokenCounter;
 
 import java.io.IOException;
@@ -23,19 +25,23 @@ public class PromptGenerator {
 
     public List<Message> generateMessages(PromptInfo promptInfo) {
         List<Message> messages = new ArrayList<>();
-        if (promptInfo.errorMsg == null) { // round 0
-            messages.add(Message.ofSystem(createSystemPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
-            messages.add(Message.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
-        } else {
-            messages.add(Message.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_REPAIR)));
+        try (Metrics.Stage stage = Metrics.start("prompt")) {
+            if (promptInfo.errorMsg == null) { // round 0
+                messages.add(Message.ofSystem(createSystemPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
+                messages.add(Message.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
+            } else {
+                messages.add(Message.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_REPAIR)));
+            }
         }
         return messages;
     }
 
     public List<Message> generateMessages(PromptInfo promptInfo, String templateName) {
         List<Message> messages = new ArrayList<>();
-        messages.add(Message.ofSystem(createSystemPrompt(promptInfo, templateName)));
-        messages.add(Message.of(createUserPrompt(promptInfo, templateName)));
+        try (Metrics.Stage stage = Metrics.start("prompt")) {
+            messages.add(Message.ofSystem(createSystemPrompt(promptInfo, templateName)));
+            messages.add(Message.of(createUserPrompt(promptInfo, templateName)));
+        }
         return messages;
     }
 
@@ -44,18 +50,17 @@ public class PromptGenerator {
             this.promptTemplate.buildDataModel(config, promptInfo);
             if (templateName.equals(promptTemplate.TEMPLATE_REPAIR)) { // repair process
 
-                int promptTokens = TokenCounter.countToken(promptInfo.getUnitTest())
-                        + TokenCounter.countToken(promptInfo.getMethodSignature())
-                        + TokenCounter.countToken(promptInfo.getClassName())
-                        + TokenCounter.countToken(promptInfo.getContext())
-                        + TokenCounter.countToken(promptInfo.getOtherMethodBrief());
+                Model model = config.getModel();
+                int promptTokens = TokenCounter.countToken(promptInfo.getUnitTest(), model)
+                        + TokenCounter.countToken(promptInfo.getMethodSignature(), model)
+                        + TokenCounter.countToken(promptInfo.getClassName(), model)
+                        + TokenCounter.countToken(promptInfo.getContext(), model)
+                        + TokenCounter.countToken(promptInfo.getOtherMethodBrief(), model);
                 int allowedTokens = Math.max(config.getMaxPromptTokens() - promptTokens, config.getMinErrorTokens());
                 TestMessage errorMsg = promptInfo.getErrorMsg();
-                String processedErrorMsg = "";
-                for (String error : errorMsg.getErrorMessage()) {
-                    if (TokenCounter.countToken(processedErrorMsg + error + "\n") <= allowedTokens) {
-                        processedErrorMsg += error + "\n";
-                    }
+                String processedErrorMsg;
+                try (Metrics.Stage stage = Metrics.start("prompt_fit")) {
+                    processedErrorMsg = ErrorMessagePacker.pack(errorMsg.getErrorMessage(), allowedTokens, model);
                 }
                 config.getLog().debug("Allowed tokens: " + allowedTokens);
                 config.getLog().debug("Processed error message: \n" + processedErrorMsg);
@@ -75,6 +80,10 @@ public class PromptGenerator {
     public String createSystemPrompt(PromptInfo promptInfo, String templateName) {
         try {
             String filename;
+            if (config.isEnableStablePrefix() && templateName.equals(promptTemplate.TEMPLATE_INIT)) {
+                // the stable layout only reorders the user prompt, it keeps the system prompt of the default one
+                templateName = promptTemplate.properties.getProperty("PROMPT_TEMPLATE_INIT");
+            }
             filename = addSystemFileName(templateName);
             return promptTemplate.renderTemplate(filename);
         } catch (Exception e) {
@@ -3,17 +3,19 @@ package zju.cst.aces.prompt;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import zju.cst.aces.api.Task;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.ExampleUsage;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.dto.PromptInfo;
-import zju.cst.aces.parser.ProjectParser;
 import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.TokenCounter;
+import zju.cst.aces.util.jfr.RenderTemplateEvent;
 
 import java.io.File;
 import java.io.IOException;
@@ -21,10 +23,7 @@ import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 public class PromptTemplate {
@@ -34,7 +33,9 @@ public class PromptTemplate {
     public String TEMPLATE_INIT = "";
     public String TEMPLATE_EXTRA = "";
     public String TEMPLATE_REPAIR = "";
-    public Map<String, Object> dataModel = new HashMap<>();
+    public String TEMPLATE_BATCH = "";
+    public Map<String, Object> dataModel = new LazyDataModel();
+    private String dataModelKey;
     public Properties properties;
     public Path promptPath;
     public int maxPromptTokens;
@@ -48,119 +49,129 @@ public class PromptTemplate {
         TEMPLATE_INIT = properties.getProperty("PROMPT_TEMPLATE_INIT");
         TEMPLATE_EXTRA = properties.getProperty("PROMPT_TEMPLATE_EXTRA");
         TEMPLATE_REPAIR = properties.getProperty("PROMPT_TEMPLATE_REPAIR");
+        TEMPLATE_BATCH = properties.getProperty("PROMPT_TEMPLATE_BATCH", "batch.ftl");
+        if (config != null && config.isEnableStablePrefix()) {
+            // class-level content first, so prompts of a class share their prefix
+            TEMPLATE_INIT = properties.getProperty("PROMPT_TEMPLATE_INIT_STABLE", "initial_stable.ftl");
+            TEMPLATE_REPAIR = properties.getProperty("PROMPT_TEMPLATE_REPAIR_STABLE", "repair_stable.ftl");
+        }
     }
 
     //渲染
     public String renderTemplate(String templateFileName) throws IOException, TemplateException{
-        Configuration configuration = new Configuration(Configuration.VERSION_2_3_30);
-
-        if (this.promptPath == null) {
-            configuration.setClassForTemplateLoading(PromptTemplate.class, "/prompt");
-        } else {
-            configuration.setDirectoryForTemplateLoading(this.promptPath.toFile());
-        }
-
-        configuration.setDefaultEncoding("utf-8");
-        Template template = configuration.getTemplate(templateFileName);
-
-        Pattern pattern = Pattern.compile("\\$\\{([a-zA-Z_][\\w]*)\\}");
-        Matcher matcher = pattern.matcher(template.toString());
-        List<String> matches = new ArrayList<>();
-        while (matcher.find()) {
-            String e = matcher.group(1);
-            if (!matches.contains(e)) {
-                matches.add(e);
-            }
-        }
-
-        String generatedText;
+        RenderTemplateEvent event = new RenderTemplateEvent();
+        event.begin();
+        event.template = templateFileName;
+        Template template = TemplateRegistry.getTemplate(this.promptPath, templateFileName);
+
+        Model model = config == null ? null : config.getModel();
+        String generatedText = process(template);
+        event.passes++;
+        int tokens = TokenCounter.countToken(generatedText, model);
         // adaptive foal context
-        do {
-            StringWriter writer = new StringWriter();
-            template.process(dataModel, writer);
-            generatedText = writer.toString();
-            if (matches.size() > 0) {
-                String key = matches.get(matches.size()-1);
-                if (dataModel.containsKey(key)) {
-                    if (dataModel.get(key) instanceof String) {
-                        dataModel.put(key, "");
-                    } else if (dataModel.get(key) instanceof List) {
-                        dataModel.put(key, new ArrayList<String>());
-                    } else if (dataModel.get(key) instanceof Map) {
-                        dataModel.put(key, new HashMap<String, String>());
-                    } else {
-                        break;
-                    }
+        if (tokens > this.maxPromptTokens) {
+            try (Metrics.Stage stage = Metrics.start("prompt_fit")) {
+                List<String> variables = PromptTruncator.variables(TemplateRegistry.getReferences(template), dataModel);
+                List<String> untouched = new PromptTruncator(model).truncate(dataModel, variables, tokens - this.maxPromptTokens);
+                generatedText = process(template);
+                event.passes++;
+                // the estimate misses variables rendered more than once, blank the rest one by one
+                while (untouched.size() > 0 && TokenCounter.countToken(generatedText, model) > this.maxPromptTokens) {
+                    String key = untouched.remove(untouched.size() - 1);
+                    dataModel.put(key, PromptTruncator.blank(dataModel.get(key)));
+                    generatedText = process(template);
+                    event.passes++;
                 }
-                matches.remove(matches.size()-1);
             }
-        } while (AbstractRunner.isExceedMaxTokens(this.maxPromptTokens, generatedText) && matches.size()>0);
+        }
+        event.length = generatedText.length();
+        event.finish(true);
         return generatedText;
     }
 
+    private String process(Template template) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.process(dataModel, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Build the data model of a focal method. Variables are computed when a template first uses them,
+     * consecutive builds for the same method (e.g. repair rounds) reuse the computed values.
+     */
     public void buildDataModel(Config config, PromptInfo promptInfo) throws IOException {
-        ExampleUsage exampleUsage = new ExampleUsage(config.getExamplePath(), promptInfo.className);
-        Map<String, String> cdep_temp = new HashMap<>();
-        Map<String, String> mdep_temp = new HashMap<>();
+        String methodKey = promptInfo.getFullClassName() + "#" + promptInfo.getMethodSignature();
+        if (this.dataModel instanceof LazyDataModel && methodKey.equals(this.dataModelKey)) {
+            ((LazyDataModel) this.dataModel).reset();
+            return;
+        }
+        LazyDataModel model = new LazyDataModel();
+        ClassInfo classInfo = promptInfo.getClassInfo();
+        MethodInfo methodInfo = promptInfo.getMethodInfo();
 
         // Map<String, String>, key: dependent class names
-        this.dataModel.put("dep_packages", getDepPackages(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_imports", getDepImports(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_class_sigs", getDepClassSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_class_bodies", getDepClassBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_m_sigs", getDepBrief(promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_m_bodies", getDepBodies(promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_c_sigs", getDepConstructorSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_c_bodies", getDepConstructorBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_fields", getDepFields(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_gs_sigs", getDepGSSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_gs_bodies", getDepGSBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        model.putLazy("dep_packages", () -> getDepPackages(classInfo, methodInfo));
+        model.putLazy("dep_imports", () -> getDepImports(classInfo, methodInfo));
+        model.putLazy("dep_class_sigs", () -> getDepClassSigs(classInfo, methodInfo));
+        model.putLazy("dep_class_bodies", () -> getDepClassBodies(classInfo, methodInfo));
+        model.putLazy("dep_m_sigs", () -> getDepBrief(methodInfo));
+        model.putLazy("dep_m_bodies", () -> getDepBodies(methodInfo));
+        model.putLazy("dep_c_sigs", () -> getDepConstructorSigs(classInfo, methodInfo));
+        model.putLazy("dep_c_bodies", () -> getDepConstructorBodies(classInfo, methodInfo));
+        model.putLazy("dep_fields", () -> getDepFields(classInfo, methodInfo));
+        model.putLazy("dep_gs_sigs", () -> getDepGSSigs(classInfo, methodInfo));
+        model.putLazy("dep_gs_bodies", () -> getDepGSBodies(classInfo, methodInfo));
 
         // String
-        this.dataModel.put("example_usage", exampleUsage.getShortestUsage(promptInfo.getMethodInfo().methodSignature));
-        this.dataModel.put("project_full_code", getFullProjectCode(promptInfo.getClassName(), config));
-        this.dataModel.put("method_name", promptInfo.getMethodName());
-        this.dataModel.put("method_sig", promptInfo.getMethodSignature());
-        this.dataModel.put("method_body", promptInfo.getMethodInfo().sourceCode);
-        this.dataModel.put("class_name", promptInfo.getClassName());
-        this.dataModel.put("class_sig", promptInfo.getClassInfo().classSignature);
-        this.dataModel.put("package", promptInfo.getClassInfo().packageDeclaration);
-        this.dataModel.put("class_body", promptInfo.getClassInfo().classDeclarationCode);
-        this.dataModel.put("file_content", promptInfo.getClassInfo().compilationUnitCode);
-        this.dataModel.put("imports", AbstractRunner.joinLines(promptInfo.getClassInfo().imports));
-        this.dataModel.put("fields", AbstractRunner.joinLines(promptInfo.getClassInfo().fields));
-        if (!promptInfo.getClassInfo().constructorSigs.isEmpty()) {
-            this.dataModel.put("constructor_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().constructorBrief));
-            this.dataModel.put("constructor_bodies", AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().constructorSigs));
+        model.putLazy("example_usage", () -> new ExampleUsage(config.getExamplePath(), promptInfo.className)
+                .getShortestUsage(methodInfo.methodSignature));
+        model.putLazy("project_full_code", () -> getFullProjectCode(promptInfo.getClassName(), classInfo.compilationUnitCode, config));
+        model.putLazy("method_name", () -> promptInfo.getMethodName());
+        model.putLazy("method_sig", () -> promptInfo.getMethodSignature());
+        model.putLazy("method_body", () -> methodInfo.sourceCode);
+        model.putLazy("class_name", () -> promptInfo.getClassName());
+        model.putLazy("class_sig", () -> classInfo.classSignature);
+        model.putLazy("package", () -> classInfo.packageDeclaration);
+        model.putLazy("class_body", () -> classInfo.classDeclarationCode);
+        model.putLazy("file_content", () -> classInfo.compilationUnitCode);
+        model.putLazy("imports", () -> AbstractRunner.joinLines(classInfo.imports));
+        model.putLazy("fields", () -> AbstractRunner.joinLines(classInfo.fields));
+        model.putLazy("class_method_sigs", () -> AbstractRunner.joinLines(classInfo.methodsBrief));
+        if (!classInfo.constructorSigs.isEmpty()) {
+            model.putLazy("constructor_sigs", () -> AbstractRunner.joinLines(classInfo.constructorBrief));
+            model.putLazy("constructor_bodies", () -> AbstractRunner.getBodies(config, classInfo, classInfo.constructorSigs));
         } else {
-            this.dataModel.put("constructor_sigs", null);
-            this.dataModel.put("constructor_bodies", null);
+            model.putLazy("constructor_sigs", () -> null);
+            model.putLazy("constructor_bodies", () -> null);
         }
-        if (!promptInfo.getClassInfo().getterSetterSigs.isEmpty()) {
-            this.dataModel.put("getter_setter_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().getterSetterBrief));
-            this.dataModel.put("getter_setter_bodies", AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().getterSetterSigs));
+        if (!classInfo.getterSetterSigs.isEmpty()) {
+            model.putLazy("getter_setter_sigs", () -> AbstractRunner.joinLines(classInfo.getterSetterBrief));
+            model.putLazy("getter_setter_bodies", () -> AbstractRunner.getBodies(config, classInfo, classInfo.getterSetterSigs));
         } else {
-            this.dataModel.put("getter_setter_sigs", null);
-            this.dataModel.put("getter_setter_bodies", null);
+            model.putLazy("getter_setter_sigs", () -> null);
+            model.putLazy("getter_setter_bodies", () -> null);
         }
         if (!promptInfo.getOtherMethodBrief().trim().isEmpty()) {
-            this.dataModel.put("other_method_sigs", promptInfo.getOtherMethodBrief());
-            this.dataModel.put("other_method_bodies", promptInfo.getOtherMethodBodies());
+            model.putLazy("other_method_sigs", () -> promptInfo.getOtherMethodBrief());
+            model.putLazy("other_method_bodies", () -> promptInfo.getOtherMethodBodies());
         } else {
-            this.dataModel.put("other_method_sigs", null);
-            this.dataModel.put("other_method_bodies", null);
+            model.putLazy("other_method_sigs", () -> null);
+            model.putLazy("other_method_bodies", () -> null);
         }
 
-
-        for (Map.Entry<String, String> entry : promptInfo.getConstructorDeps().entrySet()) {
-            cdep_temp.put(entry.getKey(), entry.getValue());
-        }
-        for (Map.Entry<String, String> entry : promptInfo.getMethodDeps().entrySet()) {
-            mdep_temp.put(entry.getKey(), entry.getValue());
+        model.putLazy("c_deps", () -> new LinkedHashMap<>(promptInfo.getConstructorDeps()));
+        model.putLazy("m_deps", () -> new LinkedHashMap<>(promptInfo.getMethodDeps()));
+        if (config.isEnableDependencyOrder()) {
+            // verified tests of the dependencies generated earlier in this run
+            model.putLazy("dep_examples", () -> {
+                Set<String> depClassNames = new LinkedHashSet<>(promptInfo.getConstructorDeps().keySet());
+                depClassNames.addAll(promptInfo.getMethodDeps().keySet());
+                return VerifiedExamples.getExamples(depClassNames);
+            });
         }
-        this.dataModel.put("c_deps", cdep_temp);
-        this.dataModel.put("m_deps", mdep_temp);
-        this.dataModel.put("full_fm", promptInfo.getContext());
+        model.putLazy("full_fm", () -> promptInfo.getContext());
+        this.dataModel = model;
+        this.dataModelKey = methodKey;
     }
 
     public Map<String, String> getDepBrief(MethodInfo methodInfo) throws IOException {
@@ -566,21 +577,11 @@ public class PromptTemplate {
         return depGSBodies;
     }
 
-    public String getFullProjectCode(String className, Config config) {
-        String fullProjectCode = "";
-        List<String> classPaths = ProjectParser.scanSourceDirectory(config.project);
-        // read the file content of each path and append to fullProjectCode
-        for (String path : classPaths) {
-            String cn = path.substring(path.lastIndexOf(File.separator) + 1, path.lastIndexOf("."));
-            if (cn.equals(className)) {
-                continue;
-            }
-            try {
-                fullProjectCode += Files.readString(Paths.get(path), StandardCharsets.UTF_8) + "\n";
-            } catch (IOException e) {
-                config.getLog().warn("Failed to append class code for " + className);
-            }
-        }
-        return fullProjectCode;
+    /**
+     * The project code most related to the focal class, limited to the prompt token budget.
+     */
+    public String getFullProjectCode(String className, String focalCode, Config config) {
+        return ProjectCodeProvider.getInstance(config.getProject(), config.getLog())
+                .getProjectCode(className, focalCode, this.maxPromptTokens, config.getModel());
     }
 }
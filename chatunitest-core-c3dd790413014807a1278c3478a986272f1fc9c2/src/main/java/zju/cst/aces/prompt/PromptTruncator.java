@@ -0,0 +1,219 @@
+package zju.cst.aces.prompt;
+
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.util.TokenCounter;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks the data model of a template that renders over the token budget.
+ * The token cost of every variable is measured once, then variables are dropped or shortened
+ * starting from the one referenced last in the template, until the excess is covered.
+ * Strings are shortened by trailing top-level blocks (e.g. method bodies), maps and lists by trailing entries.
+ */
+public class PromptTruncator {
+    // interpolations and the expressions of FreeMarker directives
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("\\$\\{([^}]*)}|<#(?:if|elseif|list|assign)\\s([^>]*)>");
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_]\\w*");
+    private static final Pattern CLOSING_PATTERN = Pattern.compile("[\\s});]*");
+
+    private final Model model;
+
+    public PromptTruncator(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * The identifiers referenced by a template source, in order of first reference.
+     */
+    public static List<String> references(String templateSource) {
+        Set<String> references = new LinkedHashSet<>();
+        Matcher matcher = REFERENCE_PATTERN.matcher(templateSource);
+        while (matcher.find()) {
+            String expression = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            Matcher identifiers = IDENTIFIER_PATTERN.matcher(expression);
+            while (identifiers.find()) {
+                references.add(identifiers.group());
+            }
+        }
+        return new ArrayList<>(references);
+    }
+
+    /**
+     * The data model variables among the references of a template, in order of first reference.
+     */
+    public static List<String> variables(List<String> references, Map<String, Object> dataModel) {
+        List<String> variables = new ArrayList<>();
+        for (String reference : references) {
+            if (dataModel.containsKey(reference)) {
+                variables.add(reference);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Remove at least excessTokens tokens from the variables of the data model.
+     *
+     * @return the variables that were not touched, in template order
+     */
+    public List<String> truncate(Map<String, Object> dataModel, List<String> variables, int excessTokens) {
+        int excess = excessTokens;
+        int i = variables.size() - 1;
+        for (; i >= 0 && excess > 0; i--) {
+            String key = variables.get(i);
+            Object value = dataModel.get(key);
+            int cost = cost(value);
+            if (cost == 0) {
+                continue;
+            }
+            if (cost <= excess) {
+                dataModel.put(key, blank(value));
+                excess -= cost;
+            } else {
+                excess -= shorten(dataModel, key, value, excess);
+            }
+        }
+        return new ArrayList<>(variables.subList(0, i + 1));
+    }
+
+    /**
+     * Blank a variable the way the template expects an absent value.
+     */
+    public static Object blank(Object value) {
+        if (value instanceof String) {
+            return "";
+        } else if (value instanceof List) {
+            return new ArrayList<String>();
+        } else if (value instanceof Map) {
+            return new HashMap<String, String>();
+        }
+        return value;
+    }
+
+    private int cost(Object value) {
+        if (value instanceof String) {
+            return count((String) value);
+        } else if (value instanceof List) {
+            int cost = 0;
+            for (Object element : (List<?>) value) {
+                cost += count(String.valueOf(element));
+            }
+            return cost;
+        } else if (value instanceof Map) {
+            int cost = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                cost += count(String.valueOf(entry.getKey())) + count(String.valueOf(entry.getValue()));
+            }
+            return cost;
+        }
+        return 0;
+    }
+
+    /**
+     * Drop trailing parts of the value until needTokens are removed.
+     *
+     * @return the number of tokens removed
+     */
+    private int shorten(Map<String, Object> dataModel, String key, Object value, int needTokens) {
+        int removed = 0;
+        if (value instanceof String) {
+            List<String> blocks = splitBlocks((String) value);
+            // keep the first block (e.g. the class header) and the tail (e.g. the closing brace)
+            int end = blocks.size() - 1;
+            while (end > 1 && removed < needTokens) {
+                end--;
+                removed += count(blocks.get(end));
+            }
+            if (removed == 0) {
+                dataModel.put(key, "");
+                return count((String) value);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < end; j++) {
+                sb.append(blocks.get(j));
+            }
+            sb.append(blocks.get(blocks.size() - 1));
+            dataModel.put(key, sb.toString());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            int end = list.size();
+            while (end > 0 && removed < needTokens) {
+                end--;
+                removed += count(String.valueOf(list.get(end)));
+            }
+            dataModel.put(key, new ArrayList<>(list.subList(0, end)));
+        } else if (value instanceof Map) {
+            List<Map.Entry<?, ?>> entries = new ArrayList<>(((Map<?, ?>) value).entrySet());
+            int end = entries.size();
+            while (end > 0 && removed < needTokens) {
+                end--;
+                removed += count(String.valueOf(entries.get(end).getKey())) + count(String.valueOf(entries.get(end).getValue()));
+            }
+            Map<Object, Object> kept = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : entries.subList(0, end)) {
+                kept.put(entry.getKey(), entry.getValue());
+            }
+            dataModel.put(key, kept);
+        }
+        return removed;
+    }
+
+    /**
+     * Split text into blocks of lines ending at the outermost brace depth reached after the first opening brace,
+     * e.g. the members of a class (the first block holds the package, imports and class header) or the methods
+     * of a list of method bodies. The last element is the closing tail of the text, it may be empty.
+     */
+    static List<String> splitBlocks(String text) {
+        String body = text.stripTrailing();
+        String suffix = text.substring(body.length());
+        String[] lines = body.split("\n", -1);
+        int[] depthAfter = new int[lines.length];
+        int depth = 0;
+        int open = -1;
+        for (int i = 0; i < lines.length; i++) {
+            for (char c : lines[i].toCharArray()) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                }
+            }
+            depthAfter[i] = depth;
+            if (open < 0 && depth > 0) {
+                open = i;
+            }
+        }
+        int from = Math.max(open, 0);
+        int boundary = Integer.MAX_VALUE;
+        for (int i = from; i < lines.length - 1; i++) {
+            boundary = Math.min(boundary, depthAfter[i]);
+        }
+        List<String> blocks = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            block.append(lines[i]);
+            if (i < lines.length - 1) {
+                block.append('\n');
+                if (i >= from && depthAfter[i] == boundary) {
+                    blocks.add(block.toString());
+                    block.setLength(0);
+                }
+            }
+        }
+        String last = block.toString();
+        if (CLOSING_PATTERN.matcher(last).matches()) {
+            blocks.add(last + suffix);
+        } else {
+            blocks.add(last);
+            blocks.add(suffix);
+        }
+        return blocks;
+    }
+
+    private int count(String text) {
+        return TokenCounter.countToken(text, model);
+    }
+}
@@ -0,0 +1,63 @@
+package zju.cst.aces.prompt;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared FreeMarker configurations, one per prompt directory. Each configuration caches its parsed templates,
+ * templates on the classpath are never reloaded, templates in an external prompt directory are reloaded
+ * when the file changes. Configuration and Template are thread-safe once set up, so renders can run concurrently.
+ */
+public class TemplateRegistry {
+    private static final String CLASSPATH = "classpath:/prompt";
+    private static final long EXTERNAL_UPDATE_DELAY_MILLIS = 2000;
+
+    private static final Map<String, Configuration> CONFIGURATIONS = new ConcurrentHashMap<>();
+    // a reloaded template is a new object, stale entries go away with it
+    private static final Map<Template, List<String>> REFERENCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public static Template getTemplate(Path promptPath, String templateFileName) throws IOException {
+        Configuration configuration;
+        try {
+            configuration = getConfiguration(promptPath);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return configuration.getTemplate(templateFileName);
+    }
+
+    /**
+     * The identifiers referenced by the template, in order of first reference.
+     */
+    public static List<String> getReferences(Template template) {
+        return REFERENCES.computeIfAbsent(template, t -> Collections.unmodifiableList(PromptTruncator.references(t.toString())));
+    }
+
+    private static Configuration getConfiguration(Path promptPath) {
+        String key = promptPath == null ? CLASSPATH : promptPath.toAbsolutePath().normalize().toString();
+        return CONFIGURATIONS.computeIfAbsent(key, k -> createConfiguration(promptPath));
+    }
+
+    private static Configuration createConfiguration(Path promptPath) {
+        Configuration configuration = new Configuration(Configuration.VERSION_2_3_30);
+        if (promptPath == null) {
+            configuration.setClassForTemplateLoading(PromptTemplate.class, "/prompt");
+            configuration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        } else {
+            try {
+                configuration.setDirectoryForTemplateLoading(promptPath.toFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            configuration.setTemplateUpdateDelayMilliseconds(EXTERNAL_UPDATE_DELAY_MILLIS);
+        }
+        configuration.setDefaultEncoding("utf-8");
+        return configuration;
+    }
+}
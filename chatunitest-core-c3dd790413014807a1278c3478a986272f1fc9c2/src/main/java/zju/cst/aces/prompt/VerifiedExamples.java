@@ -0,0 +1,47 @@
+package zju.cst.aces.prompt;
+
+import zju.cst.aces.util.RunCaches;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests that compiled and passed during this run, the shortest one per focal class.
+ * They are shown to the prompts of dependent classes as examples of how to set up and use the class.
+ */
+public class VerifiedExamples {
+    private static final Map<String, String> EXAMPLES = new ConcurrentHashMap<>();
+
+    static {
+        RunCaches.register(VerifiedExamples::clear);
+    }
+
+    public static void add(String fullClassName, String testCode) {
+        if (testCode == null || testCode.isEmpty()) {
+            return;
+        }
+        EXAMPLES.merge(fullClassName, testCode, (old, added) -> added.length() < old.length() ? added : old);
+    }
+
+    public static String get(String fullClassName) {
+        return EXAMPLES.get(fullClassName);
+    }
+
+    /**
+     * The verified tests of the given classes, key: full class name.
+     */
+    public static Map<String, String> getExamples(Collection<String> fullClassNames) {
+        Map<String, String> examples = new LinkedHashMap<>();
+        for (String fullClassName : fullClassNames) {
+            String example = EXAMPLES.get(fullClassName);
+            if (example != null) {
+                examples.put(fullClassName, example);
+            }
+        }
+        return examples;
+    }
+
+    public static void clear() {
+        EXAMPLES.clear();
+    }
+}
@@ -11,15 +11,22 @@ import okhttp3.Response;
 import zju.cst.aces.api.Task;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.graph.CallGraph;
+import zju.cst.aces.graph.MethodNode;
 import zju.cst.aces.parser.ClassParser;
+import zju.cst.aces.prompt.DependencyRanker;
 import zju.cst.aces.prompt.PromptGenerator;
 import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.LruCache;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.RunCaches;
 import zju.cst.aces.util.TokenCounter;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
@@ -32,6 +39,16 @@ public abstract class AbstractRunner {
     public static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
     public static final String separator = "_";
     public static int testTimeOut = 8000;
+    // bounds of the dependency caches, in characters of cached snippets
+    private static final long DEP_INFO_CACHE_CHARS = 32L * 1024 * 1024;
+    private static final long DEP_EXPANSION_CACHE_CHARS = 32L * 1024 * 1024;
+    private static final LruCache<String, String> DEP_INFO_CACHE = new LruCache<>(DEP_INFO_CACHE_CHARS, String::length);
+    private static final LruCache<String, DepExpansion> DEP_EXPANSION_CACHE = new LruCache<>(DEP_EXPANSION_CACHE_CHARS, DepExpansion::length);
+
+    static {
+        RunCaches.register(AbstractRunner::clearDepCache);
+    }
+
     public String className;
     public String fullClassName;
     public Config config;
@@ -68,7 +85,8 @@ public abstract class AbstractRunner {
             savePath.toAbsolutePath().getParent().toFile().mkdirs();
         }
         //set charset utf-8
-        try (OutputStreamWriter writer = new OutputStreamWriter(
+        try (Metrics.Stage stage = Metrics.start("export");
+             OutputStreamWriter writer = new OutputStreamWriter(
                 new FileOutputStream(savePath.toFile()), StandardCharsets.UTF_8)) {
             writer.write(code);
         } catch (IOException e) {
@@ -239,6 +257,13 @@ public abstract class AbstractRunner {
         promptInfo.setContext(information);
         promptInfo.setOtherMethodBrief(otherMethods);
         promptInfo.setOtherMethodBodies(otherFullMethods);
+
+        // keep the most relevant dependencies that fit into the prompt
+        Set<String> directDeps = new HashSet<>(classInfo.constructorDeps.keySet());
+        directDeps.addAll(methodInfo.dependentMethods.keySet());
+        try (Metrics.Stage stage = Metrics.start("prompt_fit")) {
+            new DependencyRanker(config.getModel()).select(promptInfo, directDeps, config.getMaxPromptTokens());
+        }
         return promptInfo;
     }
 
@@ -246,23 +271,83 @@ public abstract class AbstractRunner {
         if (depth <= 1) {
             return;
         }
-        for (String dm : methodSigs) {
-            ClassInfo depClassInfo = getClassInfo(config, className);
-            if (depClassInfo == null) {
-                continue;
-            }
-            addConstructorDepsByDepth(config, depClassInfo, promptInfo);
+        DepExpansion expansion = expandDeps(config, className, methodSigs, depth);
+        expansion.constructorDeps.forEach(promptInfo::addConstructorDeps);
+        expansion.methodDeps.forEach(promptInfo::addMethodDeps);
+    }
 
-            MethodInfo depMethodInfo = getMethodInfo(config, depClassInfo, dm);
-            if (depMethodInfo == null) {
-                continue;
+    /**
+     * The dependencies reached from the methods of a class within depth, shared by every focal method
+     * that depends on the same methods. The call graph is traversed breadth-first and every method is expanded
+     * once, each depth adds at most maxPromptTokens of dependencies since more can not fit into a prompt.
+     */
+    private static DepExpansion expandDeps(Config config, String className, Set<String> methodSigs, int depth) throws IOException {
+        String key = depKey(config, className, methodSigs, depth);
+        DepExpansion expansion = DEP_EXPANSION_CACHE.get(key);
+        if (expansion != null) {
+            return expansion;
+        }
+        DepExpansion newExpansion = new DepExpansion();
+        CallGraph callGraph = new CallGraph();
+        Map<String, ClassInfo> classInfos = new HashMap<>();
+        int[] depthTokens = new int[depth];
+        List<MethodNode> starts = new ArrayList<>();
+        for (String sig : methodSigs) {
+            starts.add(callGraph.getOrAddNode(className, sig));
+        }
+        try {
+            // methods at depth - 1 are only added as dependencies of their callers
+            callGraph.bfs(starts, depth - 2, (node, level) -> {
+                try {
+                    return expandMethod(config, callGraph, node, classInfos, newExpansion, depthTokens, level);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        DEP_EXPANSION_CACHE.put(key, newExpansion);
+        return newExpansion;
+    }
+
+    private static List<MethodNode> expandMethod(Config config, CallGraph callGraph, MethodNode node, Map<String, ClassInfo> classInfos,
+                                                 DepExpansion expansion, int[] depthTokens, int level) throws IOException {
+        List<MethodNode> callees = new ArrayList<>();
+        String className = node.getClassName();
+        boolean firstVisit = !classInfos.containsKey(className);
+        if (firstVisit) {
+            classInfos.put(className, getClassInfo(config, className));
+        }
+        ClassInfo depClassInfo = classInfos.get(className);
+        if (depClassInfo == null) {
+            return callees;
+        }
+        if (firstVisit) {
+            for (Map.Entry<String, Set<String>> entry : depClassInfo.constructorDeps.entrySet()) {
+                String depInfo = getDepInfo(config, entry.getKey(), entry.getValue());
+                expansion.constructorDeps.put(entry.getKey(), depInfo);
+                depthTokens[level] += TokenCounter.countToken(depInfo, config.getModel());
             }
-            for (String depClassName : depMethodInfo.dependentMethods.keySet()) {
-                Set<String> depMethods = depMethodInfo.dependentMethods.get(depClassName);
-                promptInfo.addMethodDeps(depClassName, getDepInfo(config, depClassName, depMethods));
-                addMethodDepsByDepth(config, depClassName, depMethods, promptInfo, depth - 1);
+        }
+        MethodInfo depMethodInfo = getMethodInfo(config, depClassInfo, node.getMethodSignature());
+        if (depMethodInfo == null) {
+            return callees;
+        }
+        for (Map.Entry<String, Set<String>> entry : depMethodInfo.dependentMethods.entrySet()) {
+            if (depthTokens[level] >= config.getMaxPromptTokens()) {
+                break;
+            }
+            String depInfo = getDepInfo(config, entry.getKey(), entry.getValue());
+            expansion.methodDeps.put(entry.getKey(), depInfo);
+            depthTokens[level] += TokenCounter.countToken(depInfo, config.getModel());
+            for (String sig : entry.getValue()) {
+                MethodNode callee = callGraph.getOrAddNode(entry.getKey(), sig);
+                callGraph.addCall(node, callee);
+                callees.add(callee);
             }
         }
+        return callees;
     }
 
     public static void addConstructorDepsByDepth(Config config, ClassInfo classInfo, PromptInfo promptInfo) throws IOException {
@@ -301,7 +386,33 @@ public abstract class AbstractRunner {
         return GSON.fromJson(Files.readString(depMethodInfoPath, StandardCharsets.UTF_8), MethodInfo.class);
     }
 
+    /**
+     * The snippet of a dependent class with its constructors, fields, getters/setters and the given methods.
+     * Snippets are cached for the run, the focal methods of a class usually share their dependencies.
+     */
     public static String getDepInfo(Config config, String depClassName, Set<String> depMethods) throws IOException {
+        String key = depKey(config, depClassName, depMethods, 1);
+        if (DEP_INFO_CACHE.containsKey(key)) {
+            return DEP_INFO_CACHE.get(key);
+        }
+        String depInfo = buildDepInfo(config, depClassName, depMethods);
+        DEP_INFO_CACHE.put(key, depInfo);
+        return depInfo;
+    }
+
+    /**
+     * Drop the cached dependency snippets, e.g. when the project is parsed again.
+     */
+    public static void clearDepCache() {
+        DEP_INFO_CACHE.clear();
+        DEP_EXPANSION_CACHE.clear();
+    }
+
+    private static String depKey(Config config, String className, Set<String> methodSigs, int depth) {
+        return config.getParseOutput() + "#" + className + "#" + new TreeSet<>(methodSigs) + "#" + depth;
+    }
+
+    private static String buildDepInfo(Config config, String depClassName, Set<String> depMethods) throws IOException {
         ClassInfo depClassInfo = getClassInfo(config, depClassName);
         if (depClassInfo == null) {
             return null;
@@ -366,7 +477,8 @@ public abstract class AbstractRunner {
             recordPath.toFile().mkdirs();
         }
         File recordFile = recordPath.resolve("records.json").toFile();
-        try (OutputStreamWriter writer = new OutputStreamWriter(
+        try (Metrics.Stage stage = Metrics.start("export");
+             OutputStreamWriter writer = new OutputStreamWriter(
                 new FileOutputStream(recordFile), StandardCharsets.UTF_8)) {
             writer.write(GSON.toJson(promptInfo.getRecords()));
         } catch (IOException e) {
@@ -463,4 +575,20 @@ public abstract class AbstractRunner {
         }
         return false;
     }
+
+    private static class DepExpansion {
+        final Map<String, String> constructorDeps = new LinkedHashMap<>();
+        final Map<String, String> methodDeps = new LinkedHashMap<>();
+
+        long length() {
+            long length = 0;
+            for (String dep : constructorDeps.values()) {
+                length += dep == null ? 0 : dep.length();
+            }
+            for (String dep : methodDeps.values()) {
+                length += dep == null ? 0 : dep.length();
+            }
+            return length;
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package zju.cst.aces.runner;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.api.config.ModelConfig;
+import zju.cst.aces.api.impl.ChatGenerator;
+import zju.cst.aces.dto.ChatResponse;
+import zju.cst.aces.dto.Message;
+import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.util.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Generates the round-0 tests of a set of classes as offline batch jobs, then validates and repairs each test
+ * like MethodRunner does. With stopWhenSuccess only the first attempt of a method is batched. An attempt without
+ * a result from the batch job is generated interactively.
+ */
+public class BulkRunner {
+    private final Config config;
+
+    public BulkRunner(Config config) {
+        this.config = config;
+    }
+
+    public void start(List<String> fullClassNames) throws IOException {
+        Map<String, List<Message>> requests = new LinkedHashMap<>();
+        Map<String, List<MethodInfo>> methodsByClass = new LinkedHashMap<>();
+        for (String fullClassName : fullClassNames) {
+            ClassRunner classRunner = new ClassRunner(config, fullClassName);
+            List<MethodInfo> methods = new ArrayList<>();
+            for (String mSig : classRunner.methodOrder()) {
+                MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, classRunner.classInfo, mSig);
+                if (methodInfo == null || !Counter.filter(methodInfo)) {
+                    continue;
+                }
+                methods.add(methodInfo);
+                List<Message> prompt = new MethodRunner(config, fullClassName, methodInfo).initialPrompt();
+                if (AbstractRunner.isExceedMaxTokens(config.getMaxPromptTokens(), prompt)) {
+                    continue;
+                }
+                // further attempts are only needed when the first one fails, they run interactively
+                int attempts = config.isStopWhenSuccess() ? 1 : config.getTestNumber();
+                for (int num = 0; num < attempts; num++) {
+                    requests.put(requestId(fullClassName, mSig, num), prompt);
+                }
+            }
+            methodsByClass.put(fullClassName, methods);
+        }
+
+        Map<String, List<Message>> admitted = fitBudget(requests);
+        Map<String, ChatResponse> responses = new HashMap<>();
+        if (!admitted.isEmpty()) {
+            config.getLog().info("\n==========================\n[ChatUniTest] Running " + admitted.size() + " round-0 requests as batch jobs ...");
+            try (Metrics.Stage stage = Metrics.start("batch")) {
+                responses.putAll(new BatchClient(config, config.getModel()).run(admitted, config.getTmpOutput().resolve("batch")));
+            }
+            config.getLog().info("[ChatUniTest] Batch jobs returned " + responses.size() + " of " + admitted.size() + " responses");
+            BudgetManager.report(config);
+        }
+
+        if (!config.isEnableMultithreading()) {
+            for (Map.Entry<String, List<MethodInfo>> entry : methodsByClass.entrySet()) {
+                validateClass(entry.getKey(), entry.getValue(), responses);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(config.getClassThreads());
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<MethodInfo>> entry : methodsByClass.entrySet()) {
+            futures.add(executor.submit(() -> {
+                validateClass(entry.getKey(), entry.getValue(), responses);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * The requests that fit into the remaining budget, in order. A batch is paid before its usage is metered, so each
+     * request is estimated with its prompt and maxResponseTokens. No request is batched once the budget is nearly
+     * spent. Dropped requests are left to the interactive attempts, which the budget admits one by one.
+     */
+    private Map<String, List<Message>> fitBudget(Map<String, List<Message>> requests) {
+        if (BudgetManager.isNearlySpent(config)) {
+            config.getLog().warn("[ChatUniTest] Budget nearly spent, skipping the batch of " + requests.size() + " requests");
+            Metrics.counter("batch.dropped_requests", requests.size());
+            return new LinkedHashMap<>();
+        }
+        Model model = config.getModel();
+        ModelConfig modelConfig = model.getDefaultConfig();
+        long remainingTokens = BudgetManager.remainingTokens(config);
+        double remainingCost = BudgetManager.remainingCost(config);
+        Map<List<Message>, Integer> promptTokens = new IdentityHashMap<>();
+        Map<String, List<Message>> admitted = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Message>> request : requests.entrySet()) {
+            // the attempts of a method share their prompt
+            int tokens = promptTokens.computeIfAbsent(request.getValue(), prompt -> {
+                int count = 0;
+                for (Message message : prompt) {
+                    count += TokenCounter.countToken(message.getContent(), model);
+                }
+                return count;
+            });
+            double cost = (tokens * modelConfig.getPromptPrice() + config.getMaxResponseTokens() * modelConfig.getCompletionPrice()) / 1000;
+            remainingTokens -= tokens + config.getMaxResponseTokens();
+            remainingCost -= cost;
+            if (remainingTokens < 0 || remainingCost < 0) {
+                break;
+            }
+            admitted.put(request.getKey(), request.getValue());
+        }
+        int dropped = requests.size() - admitted.size();
+        if (dropped > 0) {
+            config.getLog().warn("[ChatUniTest] Budget admits " + admitted.size() + " of " + requests.size()
+                    + " batch requests, dropped " + dropped + " from " + firstDropped(requests, admitted));
+            Metrics.counter("batch.dropped_requests", dropped);
+        }
+        return admitted;
+    }
+
+    private static String firstDropped(Map<String, List<Message>> requests, Map<String, List<Message>> admitted) {
+        for (String requestId : requests.keySet()) {
+            if (!admitted.containsKey(requestId)) {
+                return requestId;
+            }
+        }
+        return "";
+    }
+
+    private void validateClass(String fullClassName, List<MethodInfo> methods, Map<String, ChatResponse> responses) throws IOException {
+        config.getLog().info("\n==========================\n[ChatUniTest] Validating tests for class < " + fullClassName + " > ...");
+        for (MethodInfo methodInfo : methods) {
+            boolean success = false;
+            for (int num = 0; num < config.getTestNumber() && BudgetManager.admitAttempt(config, num); num++) {
+                ChatResponse response = responses.get(requestId(fullClassName, methodInfo.methodSignature, num));
+                String seedCode = response == null ? "" : ChatGenerator.extractCodeByResponse(response);
+                if (new MethodRunner(config, fullClassName, methodInfo).startRounds(num, seedCode.isEmpty() ? null : seedCode)) {
+                    success = true;
+                    if (config.isStopWhenSuccess()) {
+                        break;
+                    }
+                }
+            }
+            if (config.isEnablePrioritization()) {
+                MethodPrioritizer.recordAttempt(config, fullClassName, methodInfo.methodSignature, success);
+            }
+        }
+        if (config.isEnableMerge()) {
+            new TestClassMerger(config, fullClassName).mergeWithSuite();
+        }
+    }
+
+    private static String requestId(String fullClassName, String methodSignature, int num) {
+        return fullClassName + "#" + methodSignature + "#" + num;
+    }
+}
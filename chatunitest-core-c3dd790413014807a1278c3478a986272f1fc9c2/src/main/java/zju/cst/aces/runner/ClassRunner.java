@@ -3,7 +3,9 @@ package zju.cst.aces.runner;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.util.BudgetManager;
 import zju.cst.aces.util.Counter;
+import zju.cst.aces.util.Metrics;
 import zju.cst.aces.util.TestClassMerger;
 
 import java.io.File;
@@ -11,7 +13,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 
 public class ClassRunner extends AbstractRunner {
@@ -31,10 +36,12 @@ public class ClassRunner extends AbstractRunner {
 
     @Override
     public void start() throws IOException {
-        if (config.isEnableMultithreading() == true) {
+        if (config.isEnableBatchGeneration()) {
+            batchJob();
+        } else if (config.isEnableMultithreading() == true) {
             methodJob();
         } else {
-            for (String mSig : classInfo.methodSigs.keySet()) {
+            for (String mSig : methodOrder()) {
                 MethodInfo methodInfo = getMethodInfo(config, classInfo, mSig);
                 if (!Counter.filter(methodInfo)) {
                     config.getLog().info("Skip method: " + mSig + " in class: " + fullClassName);
@@ -48,10 +55,25 @@ public class ClassRunner extends AbstractRunner {
         }
     }
 
-    public void methodJob() {
+    /**
+     * The focal methods in the order to generate tests for: by expected coverage per token if prioritization
+     * is enabled, then callees first if dependency order is enabled.
+     */
+    public Collection<String> methodOrder() throws IOException {
+        Collection<String> order = classInfo.methodSigs.keySet();
+        if (config.isEnablePrioritization()) {
+            order = new MethodPrioritizer(config).prioritize(classInfo, order);
+        }
+        if (config.isEnableDependencyOrder()) {
+            order = DependencySchedule.getInstance(config).methodOrder(fullClassName, order);
+        }
+        return order;
+    }
+
+    public void methodJob() throws IOException {
         ExecutorService executor = Executors.newFixedThreadPool(config.getMethodThreads());
         List<Future<String>> futures = new ArrayList<>();
-        for (String mSig : classInfo.methodSigs.keySet()) {
+        for (String mSig : methodOrder()) {
             Callable<String> callable = new Callable<String>() {
                 @Override
                 public String call() throws Exception {
@@ -87,4 +109,76 @@ public class ClassRunner extends AbstractRunner {
 
         executor.shutdown();
     }
+
+    /**
+     * Generate the tests of the focal methods in batches, one request per batch and attempt. Each method is then
+     * validated and repaired on its own, a method without a test from the batch is generated on its own.
+     */
+    public void batchJob() throws IOException {
+        List<MethodInfo> methods = new ArrayList<>();
+        for (String mSig : methodOrder()) {
+            MethodInfo methodInfo = getMethodInfo(config, classInfo, mSig);
+            if (methodInfo == null || !Counter.filter(methodInfo)) {
+                config.getLog().info("Skip method: " + mSig + " in class: " + fullClassName);
+                continue;
+            }
+            methods.add(methodInfo);
+        }
+        MethodBatcher batcher = new MethodBatcher(config, classInfo);
+        Set<String> succeeded = ConcurrentHashMap.newKeySet();
+        for (int num = 0; num < config.getTestNumber() && BudgetManager.admitAttempt(config, num); num++) {
+            List<MethodInfo> remaining = new ArrayList<>();
+            for (MethodInfo methodInfo : methods) {
+                if (!config.isStopWhenSuccess() || !succeeded.contains(methodInfo.methodSignature)) {
+                    remaining.add(methodInfo);
+                }
+            }
+            if (remaining.isEmpty()) {
+                break;
+            }
+            List<List<MethodInfo>> batches = batcher.group(remaining);
+            if (config.isEnableMultithreading()) {
+                ExecutorService executor = Executors.newFixedThreadPool(config.getMethodThreads());
+                List<Future<?>> futures = new ArrayList<>();
+                for (List<MethodInfo> batch : batches) {
+                    int finalNum = num;
+                    futures.add(executor.submit(() -> {
+                        runBatch(batcher, batch, finalNum, succeeded);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                }
+                executor.shutdown();
+            } else {
+                for (List<MethodInfo> batch : batches) {
+                    runBatch(batcher, batch, num, succeeded);
+                }
+            }
+        }
+        if (config.isEnablePrioritization()) {
+            for (MethodInfo methodInfo : methods) {
+                MethodPrioritizer.recordAttempt(config, fullClassName, methodInfo.methodSignature,
+                        succeeded.contains(methodInfo.methodSignature));
+            }
+        }
+    }
+
+    private void runBatch(MethodBatcher batcher, List<MethodInfo> batch, int num, Set<String> succeeded) throws IOException {
+        List<String> seeds = batch.size() > 1 ? batcher.generate(batch) : Collections.singletonList(null);
+        for (int i = 0; i < batch.size(); i++) {
+            MethodInfo methodInfo = batch.get(i);
+            if (seeds.get(i) != null) {
+                Metrics.counter("batch.seeded", 1);
+            }
+            if (new MethodRunner(config, fullClassName, methodInfo).startRounds(num, seeds.get(i))) {
+                succeeded.add(methodInfo.methodSignature);
+            }
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package zju.cst.aces.runner;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.graph.*;
+import zju.cst.aces.util.RunCaches;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Orders the generation work so that classes and methods come after the ones they depend on, using the
+ * graphs exported by the parser. Tests verified for a dependency are then available to its dependents,
+ * see {@link zju.cst.aces.prompt.VerifiedExamples}.
+ */
+public class DependencySchedule {
+    private static DependencySchedule instance;
+
+    static {
+        RunCaches.register(DependencySchedule::clear);
+    }
+
+    private final Map<String, Integer> classLevels = new HashMap<>();
+    private final Map<String, Integer> methodLevels = new HashMap<>();
+    private final Map<String, Set<String>> classDependencies = new HashMap<>();
+
+    /**
+     * The schedule of the last parsed project, loaded once per run.
+     */
+    public static synchronized DependencySchedule getInstance(Config config) {
+        if (instance == null) {
+            instance = new DependencySchedule(config);
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the loaded schedule, e.g. when the project is parsed again.
+     */
+    public static synchronized void clear() {
+        instance = null;
+    }
+
+    private DependencySchedule(Config config) {
+        try {
+            TypeGraph typeGraph = GraphStore.loadTypeGraph(config.getTypeGraphPath());
+            GraphHelper.dependencyLevels(typeGraph).forEach((node, level) -> classLevels.put(node.getData(), level));
+            for (TypeNode node : typeGraph.getNodes()) {
+                Set<String> dependencies = new HashSet<>();
+                for (TypeNode dependency : typeGraph.getSuccessors(node)) {
+                    dependencies.add(dependency.getData());
+                }
+                classDependencies.put(node.getData(), dependencies);
+            }
+            CallGraph callGraph = GraphStore.loadCallGraph(config.getCallGraphPath());
+            GraphHelper.dependencyLevels(callGraph).forEach((node, level) -> methodLevels.put(node.getData(), level));
+        } catch (IOException e) {
+            config.getLog().warn("Failed to load the dependency graphs, keep the source order: " + e);
+        }
+    }
+
+    /**
+     * Group the classes into waves, a class only depends on classes of earlier waves or of its own wave (cycles).
+     * Classes keep their given order within a wave.
+     */
+    public List<List<String>> classWaves(List<String> fullClassNames) {
+        TreeMap<Integer, List<String>> waves = new TreeMap<>();
+        for (String fullClassName : fullClassNames) {
+            int level = classLevels.getOrDefault(fullClassName, 0);
+            waves.computeIfAbsent(level, k -> new ArrayList<>()).add(fullClassName);
+        }
+        return new ArrayList<>(waves.values());
+    }
+
+    /**
+     * The classes the class uses directly.
+     */
+    public Set<String> classDependencies(String fullClassName) {
+        return classDependencies.getOrDefault(fullClassName, Collections.emptySet());
+    }
+
+    /**
+     * Sort the methods of a class so that methods come after the methods they call.
+     */
+    public List<String> methodOrder(String fullClassName, Collection<String> methodSigs) {
+        List<String> order = new ArrayList<>(methodSigs);
+        order.sort(Comparator.comparingInt(sig -> methodLevels.getOrDefault(MethodNode.key(fullClassName, sig), 0)));
+        return order;
+    }
+}
@@ -0,0 +1,200 @@
+package zju.cst.aces.runner;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.api.impl.ChatGenerator;
+import zju.cst.aces.dto.*;
+import zju.cst.aces.prompt.PromptGenerator;
+import zju.cst.aces.util.AskGPT;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.ModelRouter;
+import zju.cst.aces.util.TokenCounter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the tests of several focal methods of a class with one request, so the class context is sent once.
+ * The prompt holds the union of the dependency context of the methods, as ranked for each method alone, a dependent
+ * class shared by several methods is sent once. Methods are grouped in order while the class context, their source
+ * code and the dependencies they add fit into maxPromptTokens and the expected tests (RESPONSE_SHARE of
+ * maxResponseTokens each) fit into the context of the model.
+ * The response holds one code block per method, a method without a block gets no test from the batch.
+ */
+public class MethodBatcher {
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```[\\w-]*\\s*\\n(.*?)```", Pattern.DOTALL);
+    private static final double RESPONSE_SHARE = 0.5;
+    // the instructions and numbering of the batch template
+    private static final int TEMPLATE_TOKENS = 200;
+
+    private final Config config;
+    private final ClassInfo classInfo;
+    // the dependency context of each method, reused across attempts, key: method signature
+    private final Map<String, PromptInfo> depInfos = new ConcurrentHashMap<>();
+
+    public MethodBatcher(Config config, ClassInfo classInfo) {
+        this.config = config;
+        this.classInfo = classInfo;
+    }
+
+    public List<List<MethodInfo>> group(List<MethodInfo> methods) {
+        Model model = config.getModel();
+        int contextLength = model.getDefaultConfig().getContextLength();
+        int classTokens = TEMPLATE_TOKENS + TokenCounter.countToken(classInfo.packageDeclaration, model)
+                + TokenCounter.countToken(AbstractRunner.joinLines(classInfo.imports), model)
+                + TokenCounter.countToken(classInfo.classSignature, model)
+                + TokenCounter.countToken(AbstractRunner.joinLines(classInfo.fields), model)
+                + TokenCounter.countToken(AbstractRunner.joinLines(classInfo.methodsBrief), model);
+
+        List<List<MethodInfo>> batches = new ArrayList<>();
+        List<MethodInfo> batch = new ArrayList<>();
+        Set<String> batchDeps = new HashSet<>();
+        int promptTokens = classTokens;
+        for (MethodInfo methodInfo : methods) {
+            Map<String, String> deps = dependencies(methodInfo);
+            int methodTokens = TokenCounter.countToken(methodInfo.sourceCode, model) + depTokens(deps, batchDeps, model);
+            int responseTokens = (int) ((batch.size() + 1) * config.getMaxResponseTokens() * RESPONSE_SHARE);
+            boolean fits = promptTokens + methodTokens <= config.getMaxPromptTokens()
+                    && promptTokens + methodTokens + responseTokens <= contextLength;
+            if (!batch.isEmpty() && (!fits || batch.size() >= config.getBatchSize())) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchDeps.clear();
+                promptTokens = classTokens;
+                methodTokens = TokenCounter.countToken(methodInfo.sourceCode, model) + depTokens(deps, batchDeps, model);
+            }
+            batch.add(methodInfo);
+            batchDeps.addAll(deps.keySet());
+            promptTokens += methodTokens;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * The tests generated for the methods of the batch by one request, in the order of the methods.
+     * An entry is null when the response has no test for the method.
+     */
+    public List<String> generate(List<MethodInfo> batch) throws IOException {
+        PromptInfo promptInfo = AbstractRunner.generatePromptInfoWithoutDep(config, classInfo, batch.get(0));
+        Map<String, String> constructorDeps = new LinkedHashMap<>();
+        Map<String, String> methodDeps = new LinkedHashMap<>();
+        List<Map<String, String>> batchMethods = new ArrayList<>();
+        for (MethodInfo methodInfo : batch) {
+            Map<String, String> method = new HashMap<>();
+            method.put("sig", methodInfo.methodSignature);
+            method.put("body", methodInfo.sourceCode);
+            batchMethods.add(method);
+            PromptInfo depInfo = depInfo(methodInfo);
+            if (depInfo != null) {
+                depInfo.getConstructorDeps().forEach(constructorDeps::putIfAbsent);
+                depInfo.getMethodDeps().forEach((depClassName, dep) -> {
+                    if (!constructorDeps.containsKey(depClassName)) {
+                        methodDeps.putIfAbsent(depClassName, dep);
+                    }
+                });
+            }
+        }
+        promptInfo.setConstructorDeps(constructorDeps);
+        promptInfo.setMethodDeps(methodDeps);
+
+        PromptGenerator promptGenerator = new PromptGenerator(config);
+        String templateName = promptGenerator.promptTemplate.TEMPLATE_BATCH;
+        List<Message> prompt = new ArrayList<>();
+        try (Metrics.Stage stage = Metrics.start("prompt")) {
+            promptGenerator.promptTemplate.buildDataModel(config, promptInfo);
+            promptGenerator.promptTemplate.dataModel.put("batch_methods", batchMethods);
+            prompt.add(Message.ofSystem(promptGenerator.createSystemPrompt(promptInfo, templateName)));
+            prompt.add(Message.of(promptGenerator.promptTemplate.renderTemplate(templateName)));
+        } catch (Exception e) {
+            throw new RuntimeException("In MethodBatcher.generate: " + e);
+        }
+
+        Model model = ModelRouter.route(config, prompt, Collections.singletonList(new RoundRecord(0)));
+        int promptTokens = 0;
+        for (Message message : prompt) {
+            promptTokens += TokenCounter.countToken(message.getContent(), model);
+        }
+        int maxResponseTokens = Math.min(config.getMaxResponseTokens() * batch.size(),
+                model.getDefaultConfig().getContextLength() - promptTokens);
+        Metrics.counter("batch.requests", 1);
+        Metrics.counter("batch.methods", batch.size());
+        ChatResponse response = new AskGPT(config).askChatGPT(prompt, model, maxResponseTokens);
+        List<String> tests = new ArrayList<>();
+        if (response != null) {
+            tests = split(ChatGenerator.getContentByResponse(response));
+        }
+        if (tests.size() != batch.size()) {
+            config.getLog().warn("Batched response for class < " + classInfo.className + " > has " + tests.size()
+                    + " tests for " + batch.size() + " methods");
+        }
+        List<String> seeds = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String test = i < tests.size() ? tests.get(i) : "";
+            seeds.add(test.isEmpty() ? null : test);
+        }
+        return seeds;
+    }
+
+    /**
+     * The dependency context of the method as the single-method prompt ranks it, null without dependencies.
+     */
+    private PromptInfo depInfo(MethodInfo methodInfo) throws IOException {
+        if (methodInfo.dependentMethods.isEmpty() && classInfo.constructorDeps.isEmpty()) {
+            return null;
+        }
+        PromptInfo depInfo = depInfos.get(methodInfo.methodSignature);
+        if (depInfo == null) {
+            depInfo = AbstractRunner.generatePromptInfoWithDep(config, classInfo, methodInfo);
+            depInfos.put(methodInfo.methodSignature, depInfo);
+        }
+        return depInfo;
+    }
+
+    private Map<String, String> dependencies(MethodInfo methodInfo) {
+        Map<String, String> deps = new LinkedHashMap<>();
+        try {
+            PromptInfo depInfo = depInfo(methodInfo);
+            if (depInfo != null) {
+                deps.putAll(depInfo.getConstructorDeps());
+                deps.putAll(depInfo.getMethodDeps());
+            }
+        } catch (IOException e) {
+            config.getLog().warn("Failed to collect the dependencies of " + methodInfo.methodSignature + ": " + e);
+        }
+        return deps;
+    }
+
+    /**
+     * Tokens of the dependencies not yet in the batch.
+     */
+    private static int depTokens(Map<String, String> deps, Set<String> batchDeps, Model model) {
+        int tokens = 0;
+        for (Map.Entry<String, String> dep : deps.entrySet()) {
+            if (!batchDeps.contains(dep.getKey())) {
+                tokens += TokenCounter.countToken(dep.getKey(), model) + TokenCounter.countToken(dep.getValue(), model);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The code of each code block in the content.
+     */
+    public static List<String> split(String content) {
+        List<String> tests = new ArrayList<>();
+        if (content == null) {
+            return tests;
+        }
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(content);
+        while (matcher.find()) {
+            tests.add(ChatGenerator.extractCodeByContent("```java\n" + matcher.group(1) + "```"));
+        }
+        return tests;
+    }
+}
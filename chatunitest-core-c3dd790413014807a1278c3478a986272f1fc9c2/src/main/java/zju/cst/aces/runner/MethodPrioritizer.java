@@ -0,0 +1,205 @@
+package zju.cst.aces.runner;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.stmt.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassInfo;
+import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.util.Counter;
+import zju.cst.aces.util.TokenCounter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Orders the focal methods of a class by expected coverage per token spent on them, and the classes of a project
+ * by the best priority of their methods.
+ * <p>
+ * The value of a method is its cyclomatic complexity, the number of paths a test can cover. It is weighted by the
+ * chance of a passing test, estimated from the recorded outcomes of the method and its class (kept across runs
+ * in methodStats.json) and lowered by the dependency fan-out of the method. The cost is the estimated prompt size
+ * (method and dependency context) plus the response tokens of one attempt.
+ */
+public class MethodPrioritizer {
+    private static final Pattern BRANCH_PATTERN = Pattern.compile("\\b(if|for|while|case|catch)\\b|&&|\\|\\||\\?");
+    private static final Gson GSON = new Gson();
+    private static final String STATS_FILE = "methodStats.json";
+    // attempts and successes per method by tmp output of the project, key: full class name#method signature
+    private static final Map<Path, Map<String, int[]>> STATS = new HashMap<>();
+    // the tmp outputs with outcomes not saved yet
+    private static final Set<Path> DIRTY = new HashSet<>();
+
+    private final Config config;
+
+    public MethodPrioritizer(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Record the outcome of generating tests for a method, {@link #save(Config)} keeps it for later runs.
+     */
+    public static synchronized void recordAttempt(Config config, String fullClassName, String methodSignature, boolean success) {
+        int[] stat = loadStats(config).computeIfAbsent(fullClassName + "#" + methodSignature, k -> new int[2]);
+        stat[0]++;
+        if (success) {
+            stat[1]++;
+        }
+        DIRTY.add(statsKey(config));
+    }
+
+    /**
+     * Save the outcomes recorded for the project at the end of a run.
+     */
+    public static synchronized void save(Config config) {
+        Path key = statsKey(config);
+        if (!DIRTY.remove(key)) {
+            return;
+        }
+        try {
+            Files.createDirectories(config.getTmpOutput());
+            Files.writeString(config.getTmpOutput().resolve(STATS_FILE), GSON.toJson(STATS.get(key)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            config.getLog().warn("Failed to save method statistics: " + e);
+        }
+    }
+
+    /**
+     * The method signatures sorted by descending priority, methods without parsed info go last.
+     */
+    public List<String> prioritize(ClassInfo classInfo, Collection<String> methodSigs) throws IOException {
+        Map<String, Double> priorities = new HashMap<>();
+        for (String sig : methodSigs) {
+            MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, classInfo, sig);
+            priorities.put(sig, methodInfo == null ? 0 : priority(classInfo, methodInfo));
+        }
+        List<String> order = new ArrayList<>(methodSigs);
+        order.sort(Comparator.comparingDouble((String sig) -> -priorities.get(sig)));
+        return order;
+    }
+
+    /**
+     * The priority of the class for the project-level order: the highest priority of its focal methods.
+     */
+    public double classPriority(ClassInfo classInfo) throws IOException {
+        double best = 0;
+        for (String sig : classInfo.methodSigs.keySet()) {
+            MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, classInfo, sig);
+            if (methodInfo != null && Counter.filter(methodInfo)) {
+                best = Math.max(best, priority(classInfo, methodInfo));
+            }
+        }
+        return best;
+    }
+
+    public double priority(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        int complexity = complexity(methodInfo.sourceCode);
+        int fanOut = 0;
+        for (Set<String> methods : methodInfo.dependentMethods.values()) {
+            fanOut += Math.max(methods.size(), 1);
+        }
+        double successRate = successRate(config, classInfo.fullClassName, methodInfo.methodSignature) / (1 + fanOut / 10.0);
+        return complexity * successRate / (estimatePromptTokens(methodInfo) + config.getMaxResponseTokens());
+    }
+
+    /**
+     * Tokens of the method and its dependency context, at most maxPromptTokens.
+     */
+    public int estimatePromptTokens(MethodInfo methodInfo) throws IOException {
+        int tokens = TokenCounter.countToken(methodInfo.sourceCode, config.getModel());
+        for (Map.Entry<String, Set<String>> entry : methodInfo.dependentMethods.entrySet()) {
+            if (entry.getKey().equals(methodInfo.className) || tokens >= config.getMaxPromptTokens()) {
+                continue;
+            }
+            tokens += TokenCounter.countToken(AbstractRunner.getDepInfo(config, entry.getKey(), entry.getValue()), config.getModel());
+        }
+        return Math.min(tokens, config.getMaxPromptTokens());
+    }
+
+    /**
+     * Cyclomatic complexity: one plus the decision points of the method.
+     */
+    public static int complexity(String sourceCode) {
+        if (sourceCode == null || sourceCode.isEmpty()) {
+            return 1;
+        }
+        try {
+            BodyDeclaration<?> body = StaticJavaParser.parseBodyDeclaration(sourceCode);
+            int decisions = body.findAll(IfStmt.class).size()
+                    + body.findAll(ForStmt.class).size()
+                    + body.findAll(ForEachStmt.class).size()
+                    + body.findAll(WhileStmt.class).size()
+                    + body.findAll(DoStmt.class).size()
+                    + body.findAll(CatchClause.class).size()
+                    + body.findAll(ConditionalExpr.class).size()
+                    + body.findAll(SwitchEntry.class, e -> !e.getLabels().isEmpty()).size()
+                    + body.findAll(BinaryExpr.class, e -> e.getOperator() == BinaryExpr.Operator.AND
+                    || e.getOperator() == BinaryExpr.Operator.OR).size();
+            return 1 + decisions;
+        } catch (ParseProblemException e) {
+            // e.g. syntax of a newer language level, count the branching tokens instead
+            Matcher matcher = BRANCH_PATTERN.matcher(sourceCode);
+            int decisions = 0;
+            while (matcher.find()) {
+                decisions++;
+            }
+            return 1 + decisions;
+        }
+    }
+
+    /**
+     * Success rate of the method, smoothed towards the Laplace-smoothed success rate of its class.
+     */
+    private static synchronized double successRate(Config config, String fullClassName, String methodSignature) {
+        Map<String, int[]> allStats = loadStats(config);
+        int classAttempts = 0;
+        int classSuccesses = 0;
+        String prefix = fullClassName + "#";
+        for (Map.Entry<String, int[]> entry : allStats.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                classAttempts += entry.getValue()[0];
+                classSuccesses += entry.getValue()[1];
+            }
+        }
+        double classRate = (classSuccesses + 1.0) / (classAttempts + 2.0);
+        int[] stat = allStats.getOrDefault(prefix + methodSignature, new int[2]);
+        return (stat[1] + 2 * classRate) / (stat[0] + 2.0);
+    }
+
+    private static synchronized Map<String, int[]> loadStats(Config config) {
+        Path key = statsKey(config);
+        Map<String, int[]> stats = STATS.get(key);
+        if (stats == null) {
+            stats = new HashMap<>();
+            STATS.put(key, stats);
+            Path statsPath = config.getTmpOutput().resolve(STATS_FILE);
+            if (Files.exists(statsPath)) {
+                try {
+                    Map<String, int[]> saved = GSON.fromJson(Files.readString(statsPath, StandardCharsets.UTF_8),
+                            new TypeToken<Map<String, int[]>>() {}.getType());
+                    if (saved != null) {
+                        stats.putAll(saved);
+                    }
+                } catch (IOException | JsonParseException e) {
+                    config.getLog().warn("Failed to load method statistics: " + e);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static Path statsKey(Config config) {
+        return config.getTmpOutput().toAbsolutePath().normalize();
+    }
+}
@@ -2,12 +2,18 @@ package zju.cst.aces.runner;
 
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
 import zju.cst.aces.api.impl.ChatGenerator;
 import zju.cst.aces.api.impl.PromptConstructorImpl;
 import zju.cst.aces.api.impl.RepairImpl;
 import zju.cst.aces.api.impl.obfuscator.Obfuscator;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.prompt.VerifiedExamples;
+import zju.cst.aces.util.BudgetManager;
 import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.Metrics;
+import zju.cst.aces.util.ModelRouter;
+import zju.cst.aces.util.jfr.PipelineEvent;
 import zju.cst.aces.util.TestProcessor;
 
 import java.io.BufferedWriter;
@@ -18,6 +24,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class MethodRunner extends ClassRunner {
@@ -31,6 +38,7 @@ public class MethodRunner extends ClassRunner {
 
     @Override
     public void start() throws IOException {
+        AtomicBoolean success = new AtomicBoolean(false);
         if (!config.isStopWhenSuccess() && config.isEnableMultithreading()) {
             ExecutorService executor = Executors.newFixedThreadPool(config.getTestNumber());
             List<Future<String>> futures = new ArrayList<>();
@@ -39,7 +47,9 @@ public class MethodRunner extends ClassRunner {
                 Callable<String> callable = new Callable<String>() {
                     @Override
                     public String call() throws Exception {
-                        startRounds(finalNum);
+                        if (BudgetManager.admitAttempt(config, finalNum) && startRounds(finalNum)) {
+                            success.set(true);
+                        }
                         return "";
                     }
                 };
@@ -63,15 +73,43 @@ public class MethodRunner extends ClassRunner {
 
             executor.shutdown();
         } else {
-            for (int num = 0; num < config.getTestNumber(); num++) {
-                if (startRounds(num) && config.isStopWhenSuccess()) {
-                    break;
+            for (int num = 0; num < config.getTestNumber() && BudgetManager.admitAttempt(config, num); num++) {
+                if (startRounds(num)) {
+                    success.set(true);
+                    if (config.isStopWhenSuccess()) {
+                        break;
+                    }
                 }
             }
         }
+        if (config.isEnablePrioritization()) {
+            MethodPrioritizer.recordAttempt(config, fullClassName, methodInfo.methodSignature, success.get());
+        }
+    }
+
+    /**
+     * The round-0 prompt of the method.
+     */
+    public List<Message> initialPrompt() throws IOException {
+        PromptInfo promptInfo;
+        if (!methodInfo.dependentMethods.isEmpty()) {
+            promptInfo = AbstractRunner.generatePromptInfoWithDep(config, classInfo, methodInfo);
+        } else {
+            promptInfo = AbstractRunner.generatePromptInfoWithoutDep(config, classInfo, methodInfo);
+        }
+        return promptGenerator.generateMessages(promptInfo);
     }
 
     public boolean startRounds(final int num) throws IOException {
+        return startRounds(num, null);
+    }
+
+    /**
+     * Generate and repair a test for the method.
+     *
+     * @param seedCode a test already generated for the method in round 0, null to generate it
+     */
+    public boolean startRounds(final int num, String seedCode) throws IOException {
         String testName = className + separator + methodInfo.methodName + separator
                 + classInfo.methodSigs.get(methodInfo.methodSignature) + separator + num + separator + "Test";
         String fullTestName = fullClassName + separator + methodInfo.methodName + separator
@@ -79,75 +117,114 @@ public class MethodRunner extends ClassRunner {
         config.getLog().info("\n==========================\n[ChatUniTest] Generating test for method < "
                 + methodInfo.methodName + " > number " + num + "...\n");
 
-        ChatGenerator generator = new ChatGenerator(config);
-        PromptConstructorImpl pc = new PromptConstructorImpl(config);
-        RepairImpl repair = new RepairImpl(config, pc);
+        Metrics.setTraceId(fullTestName);
+        PipelineEvent.setFocal(fullClassName, methodInfo.methodSignature);
+        try {
+            ChatGenerator generator = new ChatGenerator(config);
+            PromptConstructorImpl pc = new PromptConstructorImpl(config);
+            RepairImpl repair = new RepairImpl(config, pc);
 
-        if (!methodInfo.dependentMethods.isEmpty()) {
-            pc.setPromptInfoWithDep(classInfo, methodInfo);
-        } else {
-            pc.setPromptInfoWithoutDep(classInfo, methodInfo);
-        }
-        pc.setFullTestName(fullTestName);
-        pc.setTestName(testName);
+            if (!methodInfo.dependentMethods.isEmpty()) {
+                pc.setPromptInfoWithDep(classInfo, methodInfo);
+            } else {
+                pc.setPromptInfoWithoutDep(classInfo, methodInfo);
+            }
+            pc.setFullTestName(fullTestName);
+            pc.setTestName(testName);
 
-        PromptInfo promptInfo = pc.getPromptInfo();
-        promptInfo.setFullTestName(fullTestName);
-        Path savePath = config.getTestOutput().resolve(fullTestName.replace(".", File.separator) + ".java");
-        promptInfo.setTestPath(savePath);
+            PromptInfo promptInfo = pc.getPromptInfo();
+            promptInfo.setFullTestName(fullTestName);
+            Path savePath = config.getTestOutput().resolve(fullTestName.replace(".", File.separator) + ".java");
+            promptInfo.setTestPath(savePath);
 
-        for (int rounds = 0; rounds < config.getMaxRounds(); rounds++) {
-            promptInfo.addRecord(new RoundRecord(rounds));
-            RoundRecord record = promptInfo.getRecords().get(rounds);
-            record.setAttempt(num);
+            for (int rounds = 0; rounds < config.getMaxRounds() && BudgetManager.admitRound(config, rounds); rounds++) {
+                promptInfo.addRecord(new RoundRecord(rounds));
+                RoundRecord record = promptInfo.getRecords().get(rounds);
+                record.setAttempt(num);
+                PipelineEvent.setRound(rounds);
 
-            if (rounds == 0) {
-                config.getLog().info("Generating test for method < " + methodInfo.methodName + " > round " + rounds + " ...");
-            } else {
-                config.getLog().info("Fixing test for method < " + methodInfo.methodName + " > round " + rounds + " ...");
-            }
+                if (rounds == 0) {
+                    config.getLog().info("Generating test for method < " + methodInfo.methodName + " > round " + rounds + " ...");
+                } else {
+                    config.getLog().info("Fixing test for method < " + methodInfo.methodName + " > round " + rounds + " ...");
+                }
 
-            List<Message> prompt;
-            Obfuscator obfuscator = new Obfuscator(config);
-            if (config.isEnableObfuscate()) {
-                PromptInfo obfuscatedPromptInfo = new PromptInfo(promptInfo);
-                obfuscator.obfuscatePromptInfo(obfuscatedPromptInfo);
-                prompt = promptGenerator.generateMessages(obfuscatedPromptInfo);
-            } else {
-                prompt = promptGenerator.generateMessages(promptInfo);
-            }
+                long roundStart = System.currentTimeMillis();
+                String code;
+                long generationEnd;
+                if (rounds == 0 && seedCode != null) {
+                    // the test generated for this method by a batched class prompt
+                    code = seedCode;
+                    generationEnd = roundStart;
+                    record.setHasCode(true);
+                    record.setResponse(seedCode);
+                } else {
+                    List<Message> prompt;
+                    Obfuscator obfuscator = new Obfuscator(config);
+                    if (config.isEnableObfuscate()) {
+                        PromptInfo obfuscatedPromptInfo = new PromptInfo(promptInfo);
+                        obfuscator.obfuscatePromptInfo(obfuscatedPromptInfo);
+                        prompt = promptGenerator.generateMessages(obfuscatedPromptInfo);
+                    } else {
+                        prompt = promptGenerator.generateMessages(promptInfo);
+                    }
 
-            String code = generateTest(prompt, record);
-            if (!record.isHasCode()) {
-                continue;
-            }
+                    long promptEnd = System.currentTimeMillis();
+                    record.setPromptTime(promptEnd - roundStart);
+                    Model model = ModelRouter.route(config, prompt, promptInfo.getRecords());
+                    boolean warmup = rounds == 0 && config.isEnableStablePrefix() && PrefixWarmup.await(fullClassName);
+                    try {
+                        code = generateTest(prompt, record, model);
+                    } finally {
+                        if (warmup) {
+                            PrefixWarmup.done(fullClassName);
+                        }
+                    }
+                    generationEnd = System.currentTimeMillis();
+                    record.setGenerationTime(generationEnd - promptEnd);
+                    if (!record.isHasCode()) {
+                        continue;
+                    }
 
-            if (config.isEnableObfuscate()) {
-                code = obfuscator.deobfuscateJava(code);
-            }
-            if (CodeExtractor.isTestMethod(code)) {
-                TestSkeleton skeleton = new TestSkeleton(promptInfo); // test skeleton to wrap a test method
-                code = skeleton.build(code);
-            } else {
-                code = repair.ruleBasedRepair(code);
-            }
-            promptInfo.setUnitTest(code);
-
-            record.setCode(code);
-            repair.LLMBasedRepair(code, record.getRound());
-            if (repair.isSuccess()) {
-                record.setHasError(false);
-                exportRecord(promptInfo, classInfo, record.getAttempt());
-                return true;
+                    if (config.isEnableObfuscate()) {
+                        code = obfuscator.deobfuscateJava(code);
+                    }
+                }
+                if (CodeExtractor.isTestMethod(code)) {
+                    TestSkeleton skeleton = new TestSkeleton(promptInfo); // test skeleton to wrap a test method
+                    code = skeleton.build(code);
+                } else {
+                    code = repair.ruleBasedRepair(code);
+                }
+                promptInfo.setUnitTest(code);
+
+                record.setCode(code);
+                repair.LLMBasedRepair(code, record.getRound());
+                record.setValidationTime(System.currentTimeMillis() - generationEnd);
+                if (repair.isSuccess()) {
+                    record.setHasError(false);
+                    if (config.isEnableDependencyOrder()) {
+                        VerifiedExamples.add(fullClassName, promptInfo.getUnitTest());
+                    }
+                    exportRecord(promptInfo, classInfo, record.getAttempt());
+                    return true;
+                }
+                record.setHasError(true);
+                record.setErrorMsg(promptInfo.getErrorMsg());
             }
-            record.setHasError(true);
-            record.setErrorMsg(promptInfo.getErrorMsg());
+            exportRecord(pc.getPromptInfo(), classInfo, num);
+            return false;
+        } finally {
+            Metrics.clearTraceId();
+            PipelineEvent.clear();
         }
-        exportRecord(pc.getPromptInfo(), classInfo, num);
-        return false;
     }
 
     public String generateTest(List<Message> prompt, RoundRecord record) throws IOException {
+        return generateTest(prompt, record, config.getModel());
+    }
+
+    public String generateTest(List<Message> prompt, RoundRecord record, Model model) throws IOException {
 
         if (isExceedMaxTokens(config.getMaxPromptTokens(), prompt)) {
             config.getLog().error("Exceed max prompt tokens: " + methodInfo.methodName + " Skipped.");
@@ -155,11 +232,12 @@ public class MethodRunner extends ClassRunner {
         }
         config.getLog().debug("[Prompt]:\n" + prompt.toString());
 
-        ChatResponse response = ChatGenerator.chat(config, prompt);
+        ChatResponse response = ChatGenerator.chat(config, prompt, model);
         String content = ChatGenerator.getContentByResponse(response);
         config.getLog().debug("[Response]:\n" + content);
         String code = ChatGenerator.extractCodeByContent(content);
 
+        record.setModel(model.getModelName());
         record.setPromptToken(response.getUsage().getPromptTokens());
         record.setResponseToken(response.getUsage().getCompletionTokens());
         record.setPrompt(prompt);
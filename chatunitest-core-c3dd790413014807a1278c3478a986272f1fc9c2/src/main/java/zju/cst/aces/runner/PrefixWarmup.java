@@ -0,0 +1,52 @@
+package zju.cst.aces.runner;
+
+import zju.cst.aces.util.RunCaches;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the first round-0 request of a class go ahead of the others, which wait until it returned (at most
+ * MAX_WAIT_SECONDS). With a stable prompt prefix the provider has then cached the class-level prefix
+ * when the other requests of the class arrive.
+ */
+public class PrefixWarmup {
+    private static final long MAX_WAIT_SECONDS = 60;
+    private static final Map<String, CountDownLatch> LATCHES = new ConcurrentHashMap<>();
+
+    static {
+        RunCaches.register(PrefixWarmup::clear);
+    }
+
+    /**
+     * Wait for the first request of the class.
+     *
+     * @return whether the caller sends the first request and has to call {@link #done(String)} after it
+     */
+    public static boolean await(String fullClassName) {
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch first = LATCHES.putIfAbsent(fullClassName, latch);
+        if (first == null) {
+            return true;
+        }
+        try {
+            first.await(MAX_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    public static void done(String fullClassName) {
+        CountDownLatch latch = LATCHES.get(fullClassName);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    public static void clear() {
+        LATCHES.clear();
+    }
+}
@@ -7,14 +7,19 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
 import zju.cst.aces.api.config.ModelConfig;
 import zju.cst.aces.dto.ChatResponse;
 import zju.cst.aces.dto.Message;
+import zju.cst.aces.util.jfr.LLMRequestEvent;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class AskGPT {
     private static final MediaType MEDIA_TYPE = MediaType.parse("application/json");
@@ -26,31 +31,59 @@ public class AskGPT {
     }
 
     public ChatResponse askChatGPT(List<Message> messages) {
-        String apiKey = config.getRandomKey();
+        return askChatGPT(messages, config.getModel());
+    }
+
+    /**
+     * Send the messages to the given model, using its own url and api keys when configured.
+     * Requests fail over to the backup urls of the model while an endpoint is unhealthy, and wait
+     * while all endpoints are, unless the budget of the run is exhausted.
+     */
+    public ChatResponse askChatGPT(List<Message> messages, Model model) {
+        return askChatGPT(messages, model, config.getMaxResponseTokens());
+    }
+
+    /**
+     * Send the messages to the given model, allowing a response of at most maxResponseTokens.
+     */
+    public ChatResponse askChatGPT(List<Message> messages, Model model, int maxResponseTokens) {
+        ModelConfig modelConfig = model.getDefaultConfig();
+        LLMRequestEvent event = new LLMRequestEvent();
+        event.begin();
+        event.model = modelConfig.getModelName();
         int maxTry = 5;
         while (maxTry > 0) {
+            String url = acquireUrl(modelConfig);
+            if (url == null) {
+                if (!awaitEndpoint(modelConfig)) {
+                    break;
+                }
+                continue;
+            }
+            String apiKey = getRandomKey(modelConfig);
+            event.tries++;
             Response response = null;
             try {
-                Map<String, Object> payload = new HashMap<>();
-
-//                if (Objects.equals(config.getModel(), "code-llama") || Objects.equals(config.getModel(), "code-llama-13B")) {
-//                    payload.put("max_tokens", 8092);
-//                }
-
-                ModelConfig modelConfig = config.getModel().getDefaultConfig();
-
-                payload.put("messages", messages);
-                payload.put("model", modelConfig.getModelName());
-                payload.put("temperature", config.getTemperature());
-                payload.put("frequency_penalty", config.getFrequencyPenalty());
-                payload.put("presence_penalty", config.getPresencePenalty());
-                payload.put("max_tokens", config.getMaxResponseTokens());
-                String jsonPayload = GSON.toJson(payload);
+                String jsonPayload = GSON.toJson(buildPayload(messages, modelConfig, maxResponseTokens));
 
                 RequestBody body = RequestBody.create(MEDIA_TYPE, jsonPayload);
-                Request request = new Request.Builder().url(modelConfig.getUrl()).post(body).addHeader("Content-Type", "application/json").addHeader("Authorization", "Bearer " + apiKey).build();
+                Request.Builder builder = new Request.Builder().url(url).post(body).addHeader("Content-Type", "application/json");
+                if (apiKey != null) {
+                    builder.addHeader("Authorization", "Bearer " + apiKey);
+                }
+                Request request = builder.build();
 
-                response = config.getClient().newCall(request).execute();
+                Metrics.counter("llm.requests", 1);
+                try (Metrics.Stage stage = Metrics.start("llm")) {
+                    if (modelConfig.isLocal()) {
+                        // a hedge would only take another slot of the same server
+                        response = LocalServer.of(config, url, modelConfig.getSlots()).execute(request);
+                    } else {
+                        response = RequestHedger.execute(config, modelConfig.getModelName(), request, () -> request.newBuilder()
+                                .header("Authorization", "Bearer " + getOtherKey(modelConfig, apiKey)).build());
+                    }
+                }
+                recordHealth(url, response);
                 if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
                 try {
                     Thread.sleep(config.sleepTime);
@@ -60,16 +93,161 @@ public class AskGPT {
                 if (response.body() == null) throw new IOException("Response body is null.");
                 ChatResponse chatResponse = GSON.fromJson(response.body().string(), ChatResponse.class);
                 response.close();
+                if (chatResponse.getUsage() != null) {
+                    Metrics.histogram("llm.prompt_tokens", chatResponse.getUsage().getPromptTokens());
+                    Metrics.histogram("llm.completion_tokens", chatResponse.getUsage().getCompletionTokens());
+                    event.promptTokens = chatResponse.getUsage().getPromptTokens();
+                    event.completionTokens = chatResponse.getUsage().getCompletionTokens();
+                    BudgetManager.record(config, modelConfig, event.promptTokens, event.completionTokens);
+                }
+                event.finish(true);
                 return chatResponse;
             } catch (IOException e) {
                 if (response != null) {
                     response.close();
+                } else if (CircuitBreaker.of(url).onFailure()) {
+                    config.getLog().warn("[ChatUniTest] Endpoint " + url + " is unhealthy, circuit opened");
                 }
+                Metrics.counter("llm.failures", 1);
                 config.getLog().error("In AskGPT.askChatGPT: " + e);
                 maxTry--;
             }
         }
+        event.finish(false);
         config.getLog().debug("AskGPT: Failed to get response\n");
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * The body of a chat completion request.
+     */
+    public Map<String, Object> buildPayload(List<Message> messages, ModelConfig modelConfig, int maxResponseTokens) {
+        Map<String, Object> payload = new HashMap<>();
+
+//        if (Objects.equals(config.getModel(), "code-llama") || Objects.equals(config.getModel(), "code-llama-13B")) {
+//            payload.put("max_tokens", 8092);
+//        }
+
+        payload.put("messages", messages);
+        payload.put("model", modelConfig.getModelName());
+        payload.put("temperature", config.getTemperature());
+        payload.put("frequency_penalty", config.getFrequencyPenalty());
+        payload.put("presence_penalty", config.getPresencePenalty());
+        payload.put("max_tokens", maxResponseTokens);
+        return payload;
+    }
+
+    /**
+     * The first url of the model whose circuit lets a request through, null when all circuits are open.
+     */
+    private String acquireUrl(ModelConfig modelConfig) {
+        for (String url : getUrls(modelConfig)) {
+            if (CircuitBreaker.of(url).tryAcquire()) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pause until an endpoint of the model may be probed again.
+     *
+     * @return false when the budget of the run is exhausted or the thread is interrupted
+     */
+    private boolean awaitEndpoint(ModelConfig modelConfig) {
+        long waitMillis = Long.MAX_VALUE;
+        for (String url : getUrls(modelConfig)) {
+            waitMillis = Math.min(waitMillis, CircuitBreaker.of(url).remainingMillis());
+        }
+        if (BudgetManager.isExhausted(config)) {
+            return false;
+        }
+        // a half-open endpoint is being probed by another request
+        waitMillis = Math.min(Math.max(waitMillis, 1000), 10_000);
+        config.getLog().warn("[ChatUniTest] All endpoints of " + modelConfig.getModelName() + " are unhealthy, pausing for " + waitMillis + " ms");
+        Metrics.counter("llm.paused_millis", waitMillis);
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Report the response to the circuits of its endpoint and key. Rejected keys (401, 403, 429) count
+     * against the key, other error codes against the endpoint.
+     */
+    private void recordHealth(String url, Response response) {
+        String authorization = response.request().header("Authorization");
+        CircuitBreaker endpoint = CircuitBreaker.of(url);
+        CircuitBreaker key = authorization == null ? null : CircuitBreaker.of("key:" + authorization.substring("Bearer ".length()));
+        int code = response.code();
+        if (response.isSuccessful()) {
+            endpoint.onSuccess();
+            if (key != null) {
+                key.onSuccess();
+            }
+        } else if (code == 401 || code == 403 || code == 429) {
+            endpoint.onSuccess();
+            if (key != null && key.onFailure()) {
+                config.getLog().warn("[ChatUniTest] An api key of " + url + " is rejected, circuit opened");
+            }
+        } else if (endpoint.onFailure()) {
+            config.getLog().warn("[ChatUniTest] Endpoint " + url + " is unhealthy, circuit opened");
+        }
+    }
+
+    private List<String> getUrls(ModelConfig modelConfig) {
+        List<String> urls = new ArrayList<>();
+        urls.add(modelConfig.getUrl());
+        if (modelConfig.getBackupUrls() != null) {
+            urls.addAll(Arrays.asList(modelConfig.getBackupUrls()));
+        }
+        return urls;
+    }
+
+    private String[] getKeys(ModelConfig modelConfig) {
+        String[] apiKeys = modelConfig.getApiKeys();
+        if (apiKeys == null || apiKeys.length == 0) {
+            return config.getApiKeys();
+        }
+        return apiKeys;
+    }
+
+    /**
+     * A random healthy key of the model, any key when none is healthy. A local server needs no key.
+     */
+    public String getRandomKey(ModelConfig modelConfig) {
+        String[] apiKeys = getKeys(modelConfig);
+        if (apiKeys == null || apiKeys.length == 0) {
+            return modelConfig.isLocal() ? null : config.getRandomKey();
+        }
+        return pickKey(apiKeys, null);
+    }
+
+    /**
+     * A random key other than apiKey for a hedged request, apiKey itself when it is the only one.
+     */
+    private String getOtherKey(ModelConfig modelConfig, String apiKey) {
+        List<String> otherKeys = new ArrayList<>();
+        for (String key : getKeys(modelConfig)) {
+            if (!key.equals(apiKey)) {
+                otherKeys.add(key);
+            }
+        }
+        return otherKeys.isEmpty() ? apiKey : pickKey(otherKeys.toArray(new String[0]), apiKey);
+    }
+
+    private String pickKey(String[] apiKeys, String exclude) {
+        List<String> healthyKeys = new ArrayList<>();
+        for (String key : apiKeys) {
+            if (!key.equals(exclude) && CircuitBreaker.of("key:" + key).isAvailable()) {
+                healthyKeys.add(key);
+            }
+        }
+        List<String> keys = healthyKeys.isEmpty() ? Arrays.asList(apiKeys) : healthyKeys;
+        return keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+}
@@ -0,0 +1,249 @@
+package zju.cst.aces.util;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import okhttp3.*;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.api.config.ModelConfig;
+import zju.cst.aces.dto.ChatResponse;
+import zju.cst.aces.dto.Message;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs chat requests as offline batch jobs in the format of the OpenAI batch API. The requests are written to
+ * JSONL input files, uploaded to the batch endpoint (e.g. https://api.openai.com/v1) and the results are
+ * downloaded once a job is done. Without a batch endpoint a local stand-in sends the requests of the input files
+ * to the chat endpoint of the model and writes the results in the same format.
+ */
+public class BatchClient {
+    private static final MediaType JSON_TYPE = MediaType.parse("application/json");
+    private static final MediaType JSONL_TYPE = MediaType.parse("application/jsonl");
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final int MAX_REQUESTS_PER_FILE = 50_000;
+
+    private final Config config;
+    private final Model model;
+    private final AskGPT askGPT;
+
+    public BatchClient(Config config, Model model) {
+        this.config = config;
+        this.model = model;
+        this.askGPT = new AskGPT(config);
+    }
+
+    /**
+     * Run the requests and return the responses by request id, failed requests have no response.
+     *
+     * @param dir the directory for the input and output files
+     */
+    public Map<String, ChatResponse> run(Map<String, List<Message>> requests, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> inputs = writeInputs(requests, dir);
+        List<Path> outputs = new ArrayList<>();
+        if (config.getBatchEndpoint() == null) {
+            for (Path input : inputs) {
+                outputs.add(runLocally(input));
+            }
+        } else {
+            // submit all jobs before waiting, the endpoint runs them side by side
+            Map<Path, String> batchIds = new LinkedHashMap<>();
+            for (Path input : inputs) {
+                batchIds.put(input, submit(input));
+            }
+            for (Map.Entry<Path, String> entry : batchIds.entrySet()) {
+                Path output = await(entry.getValue(), outputOf(entry.getKey()));
+                if (output != null) {
+                    outputs.add(output);
+                }
+            }
+        }
+        Map<String, ChatResponse> responses = new HashMap<>();
+        for (Path output : outputs) {
+            readResults(output, responses);
+        }
+        return responses;
+    }
+
+    private List<Path> writeInputs(Map<String, List<Message>> requests, Path dir) throws IOException {
+        ModelConfig modelConfig = model.getDefaultConfig();
+        String chatPath = HttpUrl.get(modelConfig.getUrl()).encodedPath();
+        List<Path> inputs = new ArrayList<>();
+        BufferedWriter writer = null;
+        int count = 0;
+        try {
+            for (Map.Entry<String, List<Message>> request : requests.entrySet()) {
+                if (count % MAX_REQUESTS_PER_FILE == 0) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    Path input = dir.resolve("input_" + inputs.size() + ".jsonl");
+                    inputs.add(input);
+                    writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8);
+                }
+                JsonObject line = new JsonObject();
+                line.addProperty("custom_id", request.getKey());
+                line.addProperty("method", "POST");
+                line.addProperty("url", chatPath);
+                line.add("body", GSON.toJsonTree(askGPT.buildPayload(request.getValue(), modelConfig, config.getMaxResponseTokens())));
+                writer.write(GSON.toJson(line));
+                writer.newLine();
+                count++;
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        return inputs;
+    }
+
+    private String submit(Path input) throws IOException {
+        RequestBody file = RequestBody.create(input.toFile(), JSONL_TYPE);
+        RequestBody upload = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("purpose", "batch")
+                .addFormDataPart("file", input.getFileName().toString(), file)
+                .build();
+        String fileId = call(request("/files").post(upload)).get("id").getAsString();
+
+        JsonObject batch = new JsonObject();
+        batch.addProperty("input_file_id", fileId);
+        batch.addProperty("endpoint", HttpUrl.get(model.getDefaultConfig().getUrl()).encodedPath());
+        batch.addProperty("completion_window", "24h");
+        String batchId = call(request("/batches").post(RequestBody.create(GSON.toJson(batch), JSON_TYPE))).get("id").getAsString();
+        config.getLog().info("[ChatUniTest] Submitted batch " + batchId + " for " + input.getFileName());
+        return batchId;
+    }
+
+    /**
+     * Poll the batch until it is done and download its results.
+     *
+     * @return the output file, null when the batch has no results
+     */
+    private Path await(String batchId, Path output) throws IOException {
+        while (true) {
+            JsonObject batch = call(request("/batches/" + batchId).get());
+            String status = batch.get("status").getAsString();
+            boolean done = status.equals("completed") || status.equals("failed")
+                    || status.equals("expired") || status.equals("cancelled");
+            if (done) {
+                JsonElement outputFileId = batch.get("output_file_id");
+                if (!status.equals("completed")) {
+                    config.getLog().warn("[ChatUniTest] Batch " + batchId + " is " + status);
+                }
+                if (outputFileId == null || outputFileId.isJsonNull()) {
+                    return null;
+                }
+                try (Response response = config.getClient().newCall(request("/files/" + outputFileId.getAsString() + "/content").get().build()).execute()) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        throw new IOException("Unexpected code " + response);
+                    }
+                    Files.write(output, response.body().bytes());
+                }
+                return output;
+            }
+            JsonElement counts = batch.get("request_counts");
+            config.getLog().info("[ChatUniTest] Batch " + batchId + " is " + status
+                    + (counts == null || counts.isJsonNull() ? "" : " " + counts));
+            try {
+                Thread.sleep(config.getBatchPollSeconds() * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("In BatchClient.await: " + e);
+            }
+        }
+    }
+
+    /**
+     * The local stand-in of a batch job: send the requests of the input file to the chat endpoint.
+     */
+    private Path runLocally(Path input) throws IOException {
+        List<String> lines = Files.readAllLines(input, StandardCharsets.UTF_8);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(config.getMaxThreads(), 1));
+        List<Future<String>> futures = new ArrayList<>();
+        for (String line : lines) {
+            futures.add(executor.submit(() -> {
+                JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+                JsonObject body = request.getAsJsonObject("body");
+                List<Message> messages = GSON.fromJson(body.get("messages"), new TypeToken<List<Message>>() {}.getType());
+                ChatResponse chatResponse = askGPT.askChatGPT(messages, model, body.get("max_tokens").getAsInt());
+                JsonObject result = new JsonObject();
+                result.add("custom_id", request.get("custom_id"));
+                if (chatResponse == null) {
+                    JsonObject error = new JsonObject();
+                    error.addProperty("message", "Failed to get response");
+                    result.add("error", error);
+                } else {
+                    JsonObject response = new JsonObject();
+                    response.addProperty("status_code", 200);
+                    response.add("body", GSON.toJsonTree(chatResponse));
+                    result.add("response", response);
+                }
+                return GSON.toJson(result);
+            }));
+        }
+        Path output = outputOf(input);
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Future<String> future : futures) {
+                writer.write(future.get());
+                writer.newLine();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("In BatchClient.runLocally: " + e);
+        } catch (ExecutionException e) {
+            throw new IOException("In BatchClient.runLocally: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return output;
+    }
+
+    private void readResults(Path output, Map<String, ChatResponse> responses) throws IOException {
+        ModelConfig modelConfig = model.getDefaultConfig();
+        for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject result = JsonParser.parseString(line).getAsJsonObject();
+            JsonElement response = result.get("response");
+            if (response == null || response.isJsonNull() || response.getAsJsonObject().get("status_code").getAsInt() != 200) {
+                Metrics.counter("batch.failed_requests", 1);
+                continue;
+            }
+            ChatResponse chatResponse = GSON.fromJson(response.getAsJsonObject().get("body"), ChatResponse.class);
+            // the local stand-in has metered its requests already
+            if (config.getBatchEndpoint() != null && chatResponse.getUsage() != null) {
+                BudgetManager.record(config, modelConfig, chatResponse.getUsage().getPromptTokens(), chatResponse.getUsage().getCompletionTokens());
+            }
+            responses.put(result.get("custom_id").getAsString(), chatResponse);
+        }
+    }
+
+    private Request.Builder request(String path) {
+        String endpoint = config.getBatchEndpoint().replaceAll("/+$", "");
+        return new Request.Builder().url(endpoint + path)
+                .addHeader("Authorization", "Bearer " + askGPT.getRandomKey(model.getDefaultConfig()));
+    }
+
+    private JsonObject call(Request.Builder request) throws IOException {
+        try (Response response = config.getClient().newCall(request.build()).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonParser.parseString(response.body().string()).getAsJsonObject();
+        }
+    }
+
+    private static Path outputOf(Path input) {
+        return input.resolveSibling(input.getFileName().toString().replace("input_", "output_"));
+    }
+}
@@ -0,0 +1,168 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.ModelConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Run-level budget of tokens, cost and wall-clock time, metered from every chat request.
+ * A limit of 0 is unlimited. Once NEARLY_SPENT of any limit is used the run degrades: a method gets a single
+ * attempt with half of the rounds. When a limit is reached no new attempt or round is admitted,
+ * requests already sent still complete and are metered.
+ */
+public class BudgetManager {
+    private static final double NEARLY_SPENT = 0.8;
+    private static final long REPORT_INTERVAL_MILLIS = 60_000;
+    private static final Map<String, Usage> USAGE = new LinkedHashMap<>();
+
+    private static long startMillis = System.currentTimeMillis();
+    private static long lastReportMillis = startMillis;
+    private static long totalTokens;
+    private static double totalCost;
+
+    /**
+     * Reset the meters and start the deadline clock for a new run.
+     */
+    public static synchronized void start() {
+        startMillis = System.currentTimeMillis();
+        lastReportMillis = startMillis;
+        totalTokens = 0;
+        totalCost = 0;
+        USAGE.clear();
+    }
+
+    /**
+     * Meter the usage of a chat request, the cost is priced by the model config (USD per 1K tokens).
+     * Reports the burn rate at most once per REPORT_INTERVAL_MILLIS.
+     */
+    public static void record(Config config, ModelConfig modelConfig, int promptTokens, int completionTokens) {
+        double cost = (promptTokens * modelConfig.getPromptPrice() + completionTokens * modelConfig.getCompletionPrice()) / 1000;
+        boolean report;
+        synchronized (BudgetManager.class) {
+            Usage usage = USAGE.computeIfAbsent(modelConfig.getModelName(), k -> new Usage());
+            usage.requests++;
+            usage.promptTokens += promptTokens;
+            usage.completionTokens += completionTokens;
+            usage.cost += cost;
+            totalTokens += promptTokens + completionTokens;
+            totalCost += cost;
+            long now = System.currentTimeMillis();
+            report = now - lastReportMillis >= REPORT_INTERVAL_MILLIS;
+            if (report) {
+                lastReportMillis = now;
+            }
+        }
+        Metrics.counter("budget.tokens", promptTokens + completionTokens);
+        Metrics.counter("budget.cost_micros", Math.round(cost * 1_000_000));
+        if (report) {
+            report(config);
+        }
+    }
+
+    /**
+     * The used fraction of the tightest limit, 0 when the run is unlimited.
+     */
+    public static synchronized double spentFraction(Config config) {
+        double spent = 0;
+        if (config.getMaxTotalTokens() > 0) {
+            spent = Math.max(spent, (double) totalTokens / config.getMaxTotalTokens());
+        }
+        if (config.getMaxCost() > 0) {
+            spent = Math.max(spent, totalCost / config.getMaxCost());
+        }
+        if (config.getDeadlineMinutes() > 0) {
+            spent = Math.max(spent, (System.currentTimeMillis() - startMillis) / (config.getDeadlineMinutes() * 60_000.0));
+        }
+        return spent;
+    }
+
+    public static boolean isExhausted(Config config) {
+        return spentFraction(config) >= 1;
+    }
+
+    public static boolean isNearlySpent(Config config) {
+        return spentFraction(config) >= NEARLY_SPENT;
+    }
+
+    /**
+     * The tokens left before the token limit is reached, Long.MAX_VALUE when unlimited.
+     */
+    public static synchronized long remainingTokens(Config config) {
+        return config.getMaxTotalTokens() > 0 ? Math.max(config.getMaxTotalTokens() - totalTokens, 0) : Long.MAX_VALUE;
+    }
+
+    /**
+     * The cost left before the cost limit is reached, infinite when unlimited.
+     */
+    public static synchronized double remainingCost(Config config) {
+        return config.getMaxCost() > 0 ? Math.max(config.getMaxCost() - totalCost, 0) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Whether the budget admits the attempt with the given number for a focal method.
+     */
+    public static boolean admitAttempt(Config config, int num) {
+        double spent = spentFraction(config);
+        if (spent < NEARLY_SPENT || (spent < 1 && num == 0)) {
+            return true;
+        }
+        Metrics.counter("budget.denied_attempts", 1);
+        config.getLog().debug("Budget denied attempt " + num + ", " + Math.round(spent * 100) + "% spent");
+        return false;
+    }
+
+    /**
+     * Whether the budget admits the round with the given number of an attempt.
+     */
+    public static boolean admitRound(Config config, int round) {
+        double spent = spentFraction(config);
+        if (spent < NEARLY_SPENT || (spent < 1 && round < Math.max(1, config.getMaxRounds() / 2))) {
+            return true;
+        }
+        Metrics.counter("budget.denied_rounds", 1);
+        config.getLog().debug("Budget denied round " + round + ", " + Math.round(spent * 100) + "% spent");
+        return false;
+    }
+
+    /**
+     * Log the spend per model, the burn rate and the time left at this rate.
+     */
+    public static synchronized void report(Config config) {
+        double minutes = Math.max(System.currentTimeMillis() - startMillis, 1) / 60_000.0;
+        double tokenRate = totalTokens / minutes;
+        double costRate = totalCost / minutes;
+        StringBuilder sb = new StringBuilder("[ChatUniTest] Budget: ")
+                .append(totalTokens).append(" tokens, $").append(String.format("%.4f", totalCost))
+                .append(" in ").append(String.format("%.1f", minutes)).append(" min, burn rate ")
+                .append(Math.round(tokenRate)).append(" tokens/min, $").append(String.format("%.4f", costRate)).append("/min");
+        double minutesLeft = Double.POSITIVE_INFINITY;
+        if (config.getMaxTotalTokens() > 0 && tokenRate > 0) {
+            minutesLeft = Math.min(minutesLeft, (config.getMaxTotalTokens() - totalTokens) / tokenRate);
+        }
+        if (config.getMaxCost() > 0 && costRate > 0) {
+            minutesLeft = Math.min(minutesLeft, (config.getMaxCost() - totalCost) / costRate);
+        }
+        if (config.getDeadlineMinutes() > 0) {
+            minutesLeft = Math.min(minutesLeft, config.getDeadlineMinutes() - minutes);
+        }
+        if (!Double.isInfinite(minutesLeft)) {
+            sb.append(", ").append(String.format("%.1f", Math.max(minutesLeft, 0))).append(" min left");
+        }
+        for (Map.Entry<String, Usage> entry : USAGE.entrySet()) {
+            Usage usage = entry.getValue();
+            sb.append("\n - ").append(entry.getKey()).append(": ").append(usage.requests).append(" requests, ")
+                    .append(usage.promptTokens).append(" prompt tokens, ").append(usage.completionTokens)
+                    .append(" completion tokens, $").append(String.format("%.4f", usage.cost));
+        }
+        config.getLog().info(sb.toString());
+    }
+
+    private static class Usage {
+        long requests;
+        long promptTokens;
+        long completionTokens;
+        double cost;
+    }
+}
@@ -0,0 +1,101 @@
+package zju.cst.aces.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Health of a model endpoint or api key, shared by all threads of a run.
+ * The breaker opens after FAILURE_THRESHOLD consecutive failures and rejects requests while open. After the open
+ * period a single probe request is let through (half-open): a success closes the breaker, a failure opens it again
+ * for twice as long, up to MAX_OPEN_MILLIS.
+ */
+public class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long MIN_OPEN_MILLIS = 10_000;
+    private static final long MAX_OPEN_MILLIS = 300_000;
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openMillis = MIN_OPEN_MILLIS;
+    private long openUntil;
+    private long probeStart = -1;
+
+    public static CircuitBreaker of(String name) {
+        return BREAKERS.computeIfAbsent(name, k -> new CircuitBreaker());
+    }
+
+    /**
+     * Whether a request may be sent, turns an expired open breaker half-open and takes its probe.
+     * Every acquired request must be reported with {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now >= openUntil) {
+            state = State.HALF_OPEN;
+            probeStart = -1;
+        }
+        if (state == State.HALF_OPEN) {
+            // a probe that was never reported does not block the endpoint forever
+            if (probeStart >= 0 && now - probeStart < MAX_OPEN_MILLIS) {
+                return false;
+            }
+            probeStart = now;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Whether a request may be sent, without taking the probe of a half-open breaker. A failure reported after
+     * the open period opens the breaker again for twice as long.
+     */
+    public synchronized boolean isAvailable() {
+        return state == State.CLOSED || System.currentTimeMillis() >= openUntil;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        openMillis = MIN_OPEN_MILLIS;
+        probeStart = -1;
+    }
+
+    /**
+     * @return whether the failure opened the breaker
+     */
+    public synchronized boolean onFailure() {
+        failures++;
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            // a request let through by isAvailable after the open period is a failed probe
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(openMillis * 2, MAX_OPEN_MILLIS);
+        } else if (state == State.OPEN || failures < FAILURE_THRESHOLD) {
+            return false;
+        }
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        probeStart = -1;
+        Metrics.counter("llm.circuit_opened", 1);
+        return true;
+    }
+
+    /**
+     * Milliseconds until the breaker lets a probe through, 0 when it is not open.
+     */
+    public synchronized long remainingMillis() {
+        return state == State.OPEN ? Math.max(openUntil - System.currentTimeMillis(), 0) : 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -6,6 +6,7 @@ import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.jfr.ExtractEvent;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -17,7 +18,9 @@ public class CodeExtractor {
     private String extractedCode;
 
     public CodeExtractor(String text) {
-        extractedCode = extractText(text);
+        try (Metrics.Stage stage = Metrics.start("extract")) {
+            extractedCode = extractText(text);
+        }
     }
 
     public String extractText(String text) {
@@ -45,6 +48,9 @@ public class CodeExtractor {
     }
 
     public String extract(String text) {
+        ExtractEvent event = new ExtractEvent();
+        event.begin();
+        event.responseLength = text.length();
         String ec = "";
 
 
@@ -167,6 +173,8 @@ public class CodeExtractor {
 //        System.out.println("Has Code: " + hasCode);
 //        System.out.println("Extracted Code:\n" + ec);
 //        System.out.println("Has Syntactic Error: " + hasSyntacticError);
+        event.codeLength = ec.length();
+        event.finish(hasCode);
         return ec;
     }
 
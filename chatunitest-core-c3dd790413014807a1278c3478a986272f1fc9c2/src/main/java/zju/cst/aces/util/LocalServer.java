@@ -0,0 +1,114 @@
+package zju.cst.aces.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.*;
+import zju.cst.aces.api.config.Config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends chat requests to a local OpenAI-compatible inference server such as the llama.cpp server, which decodes
+ * the requests of its parallel slots as one continuous batch. At most one request per slot is in flight, further
+ * requests queue here instead of in the server, and the requests reuse one keep-alive connection per slot.
+ * Slot usage is reported as the metrics local.slots_busy, local.slot_wait_ms and local.busy_ms, the utilization
+ * of a run is busy_ms / (slots * wall time).
+ */
+public class LocalServer {
+    private static final Map<String, LocalServer> SERVERS = new ConcurrentHashMap<>();
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private final int slots;
+    private final Semaphore permits;
+    private final AtomicInteger busy = new AtomicInteger();
+    private final OkHttpClient client;
+
+    private LocalServer(Config config, String url, int slots) {
+        this.slots = slots > 0 ? slots : querySlots(config, url);
+        this.permits = new Semaphore(this.slots, true);
+        // a local server is never reached through the proxy
+        this.client = config.getClient().newBuilder()
+                .proxy(Proxy.NO_PROXY)
+                .connectionPool(new ConnectionPool(this.slots, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .build();
+        config.getLog().info("[ChatUniTest] Local inference server " + url + " with " + this.slots + " slots");
+        if (config.isEnableMultithreading() && config.getMaxThreads() < this.slots) {
+            config.getLog().warn("[ChatUniTest] Max threads " + config.getMaxThreads() + " keep some of the " + this.slots + " slots idle");
+        }
+    }
+
+    /**
+     * The server at the url, its slot count is queried from the server when slots is not positive.
+     */
+    public static LocalServer of(Config config, String url, int slots) {
+        return SERVERS.computeIfAbsent(url, u -> new LocalServer(config, u, slots));
+    }
+
+    /**
+     * Execute the request once a slot of the server is free.
+     */
+    public Response execute(Request request) throws IOException {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("In LocalServer.execute: " + e);
+        }
+        long acquired = System.nanoTime();
+        Metrics.histogram("local.slot_wait_ms", TimeUnit.NANOSECONDS.toMillis(acquired - start));
+        Metrics.histogram("local.slots_busy", busy.incrementAndGet());
+        try {
+            // the server answers a non-streaming request once it is decoded, the slot is free afterwards
+            return client.newCall(request).execute();
+        } finally {
+            busy.decrementAndGet();
+            Metrics.counter("local.busy_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acquired));
+            permits.release();
+        }
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * The slots in use, requests waiting for a slot are not counted.
+     */
+    public int getBusySlots() {
+        return busy.get();
+    }
+
+    /**
+     * The total_slots of the /props endpoint of a llama.cpp server, 1 when the server does not report it.
+     */
+    private static int querySlots(Config config, String url) {
+        HttpUrl props = HttpUrl.get(url).newBuilder().encodedPath("/props").query(null).build();
+        Request request = new Request.Builder().url(props).get().build();
+        OkHttpClient client = config.getClient().newBuilder()
+                .proxy(Proxy.NO_PROXY)
+                .callTimeout(10, TimeUnit.SECONDS)
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.isSuccessful() && response.body() != null) {
+                JsonObject body = JsonParser.parseString(response.body().string()).getAsJsonObject();
+                JsonElement totalSlots = body.get("total_slots");
+                if (totalSlots != null && totalSlots.isJsonPrimitive() && totalSlots.getAsInt() > 0) {
+                    return totalSlots.getAsInt();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            config.getLog().warn("[ChatUniTest] Failed to query the slots of " + props + ": " + e);
+        }
+        config.getLog().warn("[ChatUniTest] Local inference server " + url + " reports no slots, using 1 slot");
+        return 1;
+    }
+}
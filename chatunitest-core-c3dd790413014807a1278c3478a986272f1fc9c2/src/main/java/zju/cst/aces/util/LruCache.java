@@ -0,0 +1,57 @@
+package zju.cst.aces.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe least-recently-used cache bounded by the total weight of its values, e.g. their length.
+ * Null values are cached as well, use {@link #containsKey(Object)} to tell them from a miss.
+ */
+public class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private long weight;
+
+    public LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        if (entries.containsKey(key)) {
+            weight -= weigh(entries.get(key));
+        }
+        entries.put(key, value);
+        weight += weigh(value);
+        // evict the least recently used entries, the newest one is always kept
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && entries.size() > 1) {
+            weight -= weigh(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private long weigh(V value) {
+        return value == null ? 0 : weigher.applyAsLong(value);
+    }
+}
@@ -0,0 +1,83 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.api.MetricsRegistry;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.impl.MetricsRegistryImpl;
+
+/**
+ * Static entry point to the metrics registry of the current run.
+ * The registry is pluggable through {@link Config.ConfigBuilder#metrics(MetricsRegistry)},
+ * the trace id identifies the focal method (attempt) handled by the current thread.
+ */
+public class Metrics {
+    private static volatile MetricsRegistry registry = new MetricsRegistryImpl();
+    private static final ThreadLocal<String> TRACE_ID = new ThreadLocal<>();
+
+    public static void setRegistry(MetricsRegistry metricsRegistry) {
+        if (metricsRegistry != null) {
+            registry = metricsRegistry;
+        }
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public static void setTraceId(String traceId) {
+        TRACE_ID.set(traceId);
+    }
+
+    public static String getTraceId() {
+        return TRACE_ID.get();
+    }
+
+    public static void clearTraceId() {
+        TRACE_ID.remove();
+    }
+
+    /**
+     * Start timing a pipeline stage, use it with try-with-resources.
+     */
+    public static Stage start(String stage) {
+        return new Stage(stage);
+    }
+
+    public static void counter(String name, long delta) {
+        registry.incrementCounter(name, delta);
+    }
+
+    public static void histogram(String name, long value) {
+        registry.recordHistogram(name, value);
+    }
+
+    /**
+     * Export the profile of this run to tmpOutput/metrics.
+     */
+    public static void export(Config config) {
+        try {
+            registry.export(config.getTmpOutput().resolve("metrics"), config.getDate());
+            config.getLog().info("[ChatUniTest] Metrics profile exported to " + config.getTmpOutput().resolve("metrics"));
+        } catch (RuntimeException e) {
+            config.getLog().warn("Failed to export metrics: " + e);
+        }
+    }
+
+    public static class Stage implements AutoCloseable {
+        private final String name;
+        private final long start;
+
+        private Stage(String name) {
+            this.name = name;
+            this.start = System.nanoTime();
+        }
+
+        public long elapsedMillis() {
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+
+        @Override
+        public void close() {
+            registry.recordTimer(name, TRACE_ID.get(), System.nanoTime() - start);
+        }
+    }
+}
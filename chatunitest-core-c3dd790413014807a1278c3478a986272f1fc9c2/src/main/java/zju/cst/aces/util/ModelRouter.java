@@ -0,0 +1,64 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.dto.Message;
+import zju.cst.aces.dto.RoundRecord;
+import zju.cst.aces.dto.TestMessage;
+
+import java.util.List;
+
+/**
+ * Picks the model of each chat request from the routing models of the config, ordered from cheap to strong.
+ * Generation (round 0) and the first repair of a compile error use the cheapest model, every further failed
+ * round escalates one model. Runtime errors and responses without code escalate right away, since a cheap
+ * model rarely fixes a failing assertion or a misread task. A model is skipped when the prompt and response
+ * do not fit into its context, and the cheapest fitting model is used once the budget is nearly spent.
+ */
+public class ModelRouter {
+
+    /**
+     * @param records the round records of the attempt, the last one is the round of the request
+     */
+    public static Model route(Config config, List<Message> prompt, List<RoundRecord> records) {
+        Model[] models = config.getRoutingModels();
+        if (models == null || models.length == 0) {
+            return config.getModel();
+        }
+        int tier = BudgetManager.isNearlySpent(config) ? 0 : tier(records);
+        int promptTokens = 0;
+        for (Message message : prompt) {
+            promptTokens += TokenCounter.countToken(message.getContent(), models[0]);
+        }
+        // the most capable fitting model up to the tier, else the first larger one
+        Model routed = null;
+        for (int i = 0; i < models.length; i++) {
+            boolean fits = promptTokens + config.getMaxResponseTokens() <= models[i].getDefaultConfig().getContextLength();
+            if (fits && (i <= tier || routed == null)) {
+                routed = models[i];
+            }
+            if (i >= tier && routed != null) {
+                break;
+            }
+        }
+        if (routed == null) {
+            routed = models[models.length - 1];
+        }
+        Metrics.counter("router." + routed.getModelName(), 1);
+        return routed;
+    }
+
+    private static int tier(List<RoundRecord> records) {
+        int tier = 0;
+        // skip the record of the current round
+        for (int i = 0; i < records.size() - 1; i++) {
+            RoundRecord record = records.get(i);
+            TestMessage error = record.getErrorMsg();
+            boolean runtimeError = error != null && error.getErrorType() == TestMessage.ErrorType.RUNTIME_ERROR;
+            if (i > 0 || !record.isHasCode() || runtimeError) {
+                tier++;
+            }
+        }
+        return tier;
+    }
+}
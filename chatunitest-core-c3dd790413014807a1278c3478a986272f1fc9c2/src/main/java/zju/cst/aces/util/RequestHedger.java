@@ -0,0 +1,157 @@
+package zju.cst.aces.util;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import zju.cst.aces.api.config.Config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends chat requests with an optional hedge: when a request has not returned after the p95 latency of its model,
+ * a duplicate is sent (e.g. with another api key), the first successful response wins and the other call is
+ * cancelled. An error response or failure is only returned when no other call is left.
+ * At most hedgingBudget of the requests are hedged, and only after MIN_SAMPLES latencies of the model are known.
+ */
+public class RequestHedger {
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    private static final double PERCENTILE = 0.95;
+    private static final Map<String, Latencies> LATENCIES = new ConcurrentHashMap<>();
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static final AtomicLong HEDGED = new AtomicLong();
+    // blocking calls instead of the async dispatcher of OkHttp, which allows only 5 requests per host
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "chatunitest-llm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Execute the request, hedging it with the request of hedgeRequest when hedging is enabled.
+     */
+    public static Response execute(Config config, String model, Request request, Supplier<Request> hedgeRequest) throws IOException {
+        if (!config.isEnableHedging()) {
+            long start = System.nanoTime();
+            Response response = config.getClient().newCall(request).execute();
+            if (response.isSuccessful()) {
+                latencies(model).add(System.nanoTime() - start);
+            }
+            return response;
+        }
+
+        REQUESTS.incrementAndGet();
+        CompletableFuture<Winner> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Call> calls = new ArrayList<>();
+        calls.add(config.getClient().newCall(request));
+        submit(calls.get(0), model, result, pending);
+        try {
+            long delay = latencies(model).percentile(PERCENTILE);
+            Winner winner;
+            try {
+                winner = delay < 0 ? result.get() : result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (HEDGED.get() < config.getHedgingBudget() * REQUESTS.get()) {
+                    HEDGED.incrementAndGet();
+                    Metrics.counter("llm.hedged", 1);
+                    pending.incrementAndGet();
+                    calls.add(config.getClient().newCall(hedgeRequest.get()));
+                    submit(calls.get(1), model, result, pending);
+                }
+                winner = result.get();
+                if (calls.size() > 1 && winner.call == calls.get(1)) {
+                    Metrics.counter("llm.hedge_wins", 1);
+                }
+            }
+            for (Call call : calls) {
+                if (call != winner.call) {
+                    call.cancel();
+                }
+            }
+            return winner.response;
+        } catch (InterruptedException e) {
+            calls.forEach(Call::cancel);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("In RequestHedger.execute: " + e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("In RequestHedger.execute: " + e.getCause());
+        }
+    }
+
+    private static void submit(Call call, String model, CompletableFuture<Winner> result, AtomicInteger pending) {
+        EXECUTOR.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                Response response = call.execute();
+                if (response.isSuccessful()) {
+                    latencies(model).add(System.nanoTime() - start);
+                } else if (pending.decrementAndGet() > 0) {
+                    // an error response (e.g. 429 or 5xx) wins only when no other call is left
+                    response.close();
+                    return;
+                }
+                if (!result.complete(new Winner(call, response))) {
+                    response.close();
+                }
+            } catch (IOException e) {
+                // the request fails only when no other call is left
+                if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private static Latencies latencies(String model) {
+        return LATENCIES.computeIfAbsent(model, k -> new Latencies());
+    }
+
+    private static class Winner {
+        final Call call;
+        final Response response;
+
+        Winner(Call call, Response response) {
+            this.call = call;
+            this.response = response;
+        }
+    }
+
+    /**
+     * The latest WINDOW latencies in nanoseconds.
+     */
+    private static class Latencies {
+        private final long[] values = new long[WINDOW];
+        private int count;
+
+        synchronized void add(long latency) {
+            values[count % WINDOW] = latency;
+            count++;
+        }
+
+        /**
+         * The latency at the given percentile, -1 before MIN_SAMPLES latencies are known.
+         */
+        synchronized long percentile(double percentile) {
+            int size = Math.min(count, WINDOW);
+            if (size < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min((int) Math.ceil(percentile * size) - 1, size - 1)];
+        }
+    }
+}
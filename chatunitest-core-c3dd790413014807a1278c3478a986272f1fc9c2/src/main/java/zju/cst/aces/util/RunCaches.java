@@ -0,0 +1,23 @@
+package zju.cst.aces.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reset hook for the static caches that hold state of one run, e.g. snippets read from the parse output.
+ * A cache registers its clear method when its class is loaded, {@link #clear()} is called whenever the
+ * project is parsed, so a cache never serves a previous project or module in the same JVM.
+ */
+public class RunCaches {
+    private static final List<Runnable> CLEARS = new CopyOnWriteArrayList<>();
+
+    public static void register(Runnable clear) {
+        CLEARS.add(clear);
+    }
+
+    public static void clear() {
+        for (Runnable clear : CLEARS) {
+            clear.run();
+        }
+    }
+}
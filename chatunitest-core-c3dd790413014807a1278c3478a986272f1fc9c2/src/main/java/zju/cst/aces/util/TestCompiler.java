@@ -18,6 +18,8 @@ import org.junit.platform.launcher.listeners.TestExecutionSummary;
 import zju.cst.aces.dto.PromptInfo;
 import zju.cst.aces.dto.TestMessage;
 import zju.cst.aces.parser.ProjectParser;
+import zju.cst.aces.util.jfr.CompileEvent;
+import zju.cst.aces.util.jfr.ExecuteEvent;
 
 import javax.tools.*;
 import java.io.BufferedWriter;
@@ -49,6 +51,7 @@ public class TestCompiler {
     public String testName;
     public String fullTestName;
     public String code;
+    public int testExecutionThreads = 1;
 
     public TestCompiler(Path testOutputPath, Path compileOutputPath, Path targetPath, List<String> classpathElements) {
         this.code = "";
@@ -69,7 +72,10 @@ public class TestCompiler {
 
     public TestExecutionSummary executeTest(String fullTestName) {
         this.fullTestName = fullTestName;
-        try {
+        ExecuteEvent event = new ExecuteEvent();
+        event.begin();
+        event.testName = fullTestName;
+        try (Metrics.Stage stage = Metrics.start("execute")) {
             List<URL> urls = new ArrayList<>();
             for (String classpath : this.classpathElements) {
                 URL url = new File(classpath).toURI().toURL();
@@ -94,14 +100,26 @@ public class TestCompiler {
             SummaryGeneratingListener listener = new SummaryGeneratingListener();
             launcher.registerTestExecutionListeners(listener);
 
-            LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-                    .selectors(selectClass(classLoader.loadClass(fullTestName)))
-                    .build();
+            LauncherDiscoveryRequestBuilder requestBuilder = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(selectClass(classLoader.loadClass(fullTestName)));
+            if (this.testExecutionThreads > 1) {
+                // Fan out the test methods of the class, the listener merges them into one summary.
+                requestBuilder.configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                        .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                        .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                        .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism",
+                                String.valueOf(this.testExecutionThreads));
+            }
+            LauncherDiscoveryRequest request = requestBuilder.build();
             launcher.execute(request);
 
             TestExecutionSummary summary = listener.getSummary();
+            event.testsFound = summary.getTestsFoundCount();
+            event.testsFailed = summary.getTotalFailureCount();
+            event.finish(summary.getTotalFailureCount() == 0);
             return summary;
         } catch (Exception e) {
+            event.finish(false);
             throw new RuntimeException("In TestCompiler.executeTest: " + e);
         }
     }
@@ -115,7 +133,10 @@ public class TestCompiler {
         }
         this.testName = className;
         boolean result;
-        try {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+        event.testName = className;
+        try (Metrics.Stage stage = Metrics.start("compile")) {
             if (!outputPath.toAbsolutePath().getParent().toFile().exists()) {
                 outputPath.toAbsolutePath().getParent().toFile().mkdirs();
             }
@@ -137,6 +158,7 @@ public class TestCompiler {
             JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
 
             result = task.call();
+            event.diagnostics = diagnostics.getDiagnostics().size();
             if (!result && promptInfo != null) {
                 TestMessage testMessage = new TestMessage();
                 List<String> errors = new ArrayList<>();
@@ -152,8 +174,10 @@ public class TestCompiler {
                 exportError(errors, outputPath);
             }
         } catch (Exception e) {
+            event.finish(false);
             throw new RuntimeException("In TestCompiler.compileTest: " + e);
         }
+        event.finish(result);
         return result;
     }
 
@@ -3,7 +3,12 @@ package zju.cst.aces.util;
 import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
 import com.knuddels.jtokkit.api.EncodingRegistry;
-import com.knuddels.jtokkit.api.ModelType;
+import com.knuddels.jtokkit.api.EncodingType;
+import zju.cst.aces.api.config.Model;
+import zju.cst.aces.api.config.ModelConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author volunze
@@ -13,15 +18,49 @@ import com.knuddels.jtokkit.api.ModelType;
  * @Version 1.0
  */
 public class TokenCounter {
+    // Building the registry loads the BPE ranks, do it once. Encodings are immutable and thread-safe.
+    private static final EncodingRegistry REGISTRY = Encodings.newDefaultEncodingRegistry();
+    private static final Map<Model, Encoding> ENCODINGS = new ConcurrentHashMap<>();
+    private static volatile Model defaultModel = Model.GPT_3_5_TURBO;
 
     public TokenCounter() {
     }
 
+    /**
+     * Set the model used by {@link #countToken(String)}, normally the model of the current run.
+     */
+    public static void setDefaultModel(Model model) {
+        if (model != null) {
+            defaultModel = model;
+        }
+    }
+
     public static int countToken(String error_message){
-        EncodingRegistry registry = Encodings.newDefaultEncodingRegistry();
-        // Get encoding for a specific model via string name
-        Encoding encoding = registry.getEncodingForModel(ModelType.GPT_3_5_TURBO);
-        int tokenCount = encoding.countTokens(error_message);
-        return tokenCount;
+        return countToken(error_message, defaultModel);
+    }
+
+    public static int countToken(String text, Model model) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return getEncoding(model).countTokens(text);
+    }
+
+    public static Encoding getEncoding(Model model) {
+        return ENCODINGS.computeIfAbsent(model == null ? defaultModel : model, TokenCounter::resolveEncoding);
+    }
+
+    /**
+     * Use the encoding of the model config if set, otherwise look it up by model name.
+     * Models unknown to jtokkit (e.g. code-llama) fall back to cl100k_base as an approximation.
+     */
+    private static Encoding resolveEncoding(Model model) {
+        ModelConfig modelConfig = model.getDefaultConfig();
+        if (modelConfig.getEncoding() != null) {
+            return REGISTRY.getEncoding(modelConfig.getEncoding())
+                    .orElseThrow(() -> new RuntimeException("In TokenCounter.resolveEncoding: unknown encoding " + modelConfig.getEncoding()));
+        }
+        return REGISTRY.getEncodingForModel(modelConfig.getModelName())
+                .orElseGet(() -> REGISTRY.getEncoding(EncodingType.CL100K_BASE));
     }
 }
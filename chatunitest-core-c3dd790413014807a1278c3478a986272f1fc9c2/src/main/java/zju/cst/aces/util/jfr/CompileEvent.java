@@ -0,0 +1,16 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.Compile")
+@Label("Compile Test")
+@Description("Compilation of a generated test in TestCompiler.compileTest")
+public class CompileEvent extends PipelineEvent {
+    @Label("Test Name")
+    public String testName;
+
+    @Label("Diagnostics")
+    public int diagnostics;
+}
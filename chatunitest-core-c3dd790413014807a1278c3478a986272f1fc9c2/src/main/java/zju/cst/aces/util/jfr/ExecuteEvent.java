@@ -0,0 +1,19 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.Execute")
+@Label("Execute Test")
+@Description("Execution of a generated test class in TestCompiler.executeTest")
+public class ExecuteEvent extends PipelineEvent {
+    @Label("Test Name")
+    public String testName;
+
+    @Label("Tests Found")
+    public long testsFound;
+
+    @Label("Tests Failed")
+    public long testsFailed;
+}
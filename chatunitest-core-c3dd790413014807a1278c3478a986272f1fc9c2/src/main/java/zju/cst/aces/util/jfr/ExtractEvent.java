@@ -0,0 +1,16 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.Extract")
+@Label("Extract Code")
+@Description("Extraction of test code from an LLM response in CodeExtractor.extract")
+public class ExtractEvent extends PipelineEvent {
+    @Label("Response Length")
+    public int responseLength;
+
+    @Label("Code Length")
+    public int codeLength;
+}
@@ -0,0 +1,22 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.LLMRequest")
+@Label("LLM Request")
+@Description("A chat completion request in AskGPT.askChatGPT, including retries")
+public class LLMRequestEvent extends PipelineEvent {
+    @Label("Model")
+    public String model;
+
+    @Label("Tries")
+    public int tries;
+
+    @Label("Prompt Tokens")
+    public int promptTokens;
+
+    @Label("Completion Tokens")
+    public int completionTokens;
+}
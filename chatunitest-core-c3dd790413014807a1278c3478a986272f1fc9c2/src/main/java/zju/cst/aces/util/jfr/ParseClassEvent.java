@@ -0,0 +1,16 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.ParseClass")
+@Label("Parse Class")
+@Description("Parsing of one source file in ClassParser.extractClass")
+public class ParseClassEvent extends PipelineEvent {
+    @Label("Source File")
+    public String sourceFile;
+
+    @Label("Classes")
+    public int classes;
+}
@@ -0,0 +1,61 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class of the ChatUniTest flight recorder events.
+ * The focal class, focal method and round are taken from the context of the current thread.
+ */
+@Category("ChatUniTest")
+@StackTrace(false)
+public abstract class PipelineEvent extends Event {
+    private static final ThreadLocal<String[]> FOCAL = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> ROUND = new ThreadLocal<>();
+
+    @Label("Focal Class")
+    public String focalClass;
+
+    @Label("Focal Method")
+    public String focalMethod;
+
+    @Label("Round")
+    public int round;
+
+    @Label("Success")
+    public boolean success;
+
+    public static void setFocal(String className, String methodName) {
+        FOCAL.set(new String[]{className, methodName});
+    }
+
+    public static void setRound(int round) {
+        ROUND.set(round);
+    }
+
+    public static void clear() {
+        FOCAL.remove();
+        ROUND.remove();
+    }
+
+    /**
+     * Finish the event and commit it if the recording wants it.
+     */
+    public void finish(boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        String[] focal = FOCAL.get();
+        if (focal != null) {
+            this.focalClass = focal[0];
+            this.focalMethod = focal[1];
+        }
+        Integer r = ROUND.get();
+        this.round = r == null ? -1 : r;
+        this.success = success;
+        commit();
+    }
+}
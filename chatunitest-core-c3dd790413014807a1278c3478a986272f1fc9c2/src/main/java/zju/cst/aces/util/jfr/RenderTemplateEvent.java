@@ -0,0 +1,19 @@
+package zju.cst.aces.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("zju.cst.aces.RenderTemplate")
+@Label("Render Template")
+@Description("Rendering of a prompt template in PromptTemplate.renderTemplate")
+public class RenderTemplateEvent extends PipelineEvent {
+    @Label("Template")
+    public String template;
+
+    @Label("Passes")
+    public int passes;
+
+    @Label("Prompt Length")
+    public int length;
+}
@@ -0,0 +1,32 @@
+The focal class `${class_name}` is declared as
+```
+${package!}
+${imports!}
+${class_sig} {
+<#if fields?has_content>
+${fields}
+</#if>
+<#if class_method_sigs?has_content>
+${class_method_sigs}
+</#if>
+}
+```.
+<#list c_deps?keys as key>
+The brief information of dependent class `${key}` is
+```${c_deps[key]}```.
+</#list>
+<#list m_deps?keys as key>
+The brief information of dependent class `${key}` is
+```${m_deps[key]}```.
+</#list>
+<#if dep_examples??>
+<#list dep_examples?keys as key>
+A verified unit test of dependent class `${key}` is
+```${dep_examples[key]}```.
+</#list>
+</#if>
+The focal methods are:
+<#list batch_methods as method>
+${method?counter}. `${method.sig}`, its source code is
+```${method.body}```.
+</#list>
@@ -0,0 +1,10 @@
+Please help me generate a whole JUnit test for each of several focal methods in a focal class.
+I will provide the following information:
+1. The package, imports and signature of the focal class.
+2. Signatures of the fields and methods in the class.
+3. Source code of each focal method, numbered.
+I will provide following brief information if the focal methods have dependencies:
+1. Signatures of dependent classes.
+2. Signatures of dependent methods and fields in the dependent classes.
+I need you to create a whole unit test class for each focal method using JUnit 5, ensuring optimal branch and line coverage. Compile without errors, and use reflection to invoke private methods.
+Return exactly one ```java code block per focal method, in the numbered order, each containing a complete test class for that method only. No additional explanations required.
@@ -11,3 +11,9 @@ The focal method is `${method_sig}` in the focal class `${class_name}`, and thei
     The brief information of dependent class `${key}` is
     ```${m_deps[key]}```.
 </#list>
+<#if dep_examples??>
+<#list dep_examples?keys as key>
+    A verified unit test of dependent class `${key}` is
+    ```${dep_examples[key]}```.
+</#list>
+</#if>
@@ -0,0 +1,29 @@
+The focal class `${class_name}` is declared as
+```
+${package!}
+${imports!}
+${class_sig} {
+<#if fields?has_content>
+${fields}
+</#if>
+<#if class_method_sigs?has_content>
+${class_method_sigs}
+</#if>
+}
+```.
+<#list c_deps?keys?sort as key>
+The brief information of dependent class `${key}` is
+```${c_deps[key]}```.
+</#list>
+<#list m_deps?keys?sort as key>
+The brief information of dependent class `${key}` is
+```${m_deps[key]}```.
+</#list>
+<#if dep_examples??>
+<#list dep_examples?keys?sort as key>
+A verified unit test of dependent class `${key}` is
+```${dep_examples[key]}```.
+</#list>
+</#if>
+The focal method is `${method_sig}` in the focal class `${class_name}`, its source code is
+```${method_body}```.